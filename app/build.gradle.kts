@@ -43,6 +43,11 @@ android {
     packagingOptions {
         resources.excludes.add("META-INF/*")
     }
+
+    // Le corpus coranique est mappé en mémoire directement depuis l'APK
+    androidResources {
+        noCompress += "qbin"
+    }
 }
 
 dependencies {
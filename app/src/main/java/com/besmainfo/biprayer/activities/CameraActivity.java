@@ -5,31 +5,42 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 
 import android.content.Intent;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.util.Size;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.besmainfo.biprayer.ai.AiFuture;
+import com.besmainfo.biprayer.ai.Deadline;
 import com.besmainfo.biprayer.ai.GeminiMultimodalClient;
+import com.besmainfo.biprayer.ai.ImagePreparer;
+import com.besmainfo.biprayer.ai.TimetableParser;
+import com.besmainfo.biprayer.services.TimetableStore;
+import com.besmainfo.biprayer.utils.BitmapDecoder;
 import com.besmainfo.biprayer.utils.ConfigReader;
 import com.besmainfo.biprayer.utils.LanguageHelper;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.besmainfo.biprayer.R;
-import java.io.File;
-import java.io.InputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -37,6 +48,9 @@ import java.util.concurrent.Executors;
 public class CameraActivity extends AppCompatActivity {
     private static final String TAG = "CameraActivity";
     private static final int REQUEST_IMAGE_PICK = 1001;
+    private static final long ANALYSIS_DEADLINE_MS = 45000;
+    /** Même qualité que la première tentative d'ImagePreparer: le JPEG de capture tient souvent dans son budget */
+    private static final int CAPTURE_JPEG_QUALITY = 85;
     
     private PreviewView previewView;
     private ImageView imageViewCaptured;
@@ -45,6 +59,9 @@ public class CameraActivity extends AppCompatActivity {
     
     private GeminiMultimodalClient geminiVisionClient;
     private Bitmap currentBitmap;
+    /** JPEG de la dernière capture, analysé sans décodage; null pour une image de la galerie */
+    private byte[] currentJpeg;
+    private AiFuture<String> analysisFuture;
     
     private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
     private ImageCapture imageCapture;
@@ -75,7 +92,7 @@ public class CameraActivity extends AppCompatActivity {
     }
 
     private void initializeServices() {
-        geminiVisionClient = new GeminiMultimodalClient(ConfigReader.getGeminiApiKey());
+        geminiVisionClient = new GeminiMultimodalClient(this, ConfigReader.getGeminiApiKey());
         cameraExecutor = Executors.newSingleThreadExecutor();
         Log.d(TAG, "Services caméra initialisés (Mode Réel)");
     }
@@ -112,8 +129,14 @@ public class CameraActivity extends AppCompatActivity {
         Preview preview = new Preview.Builder().build();
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
+        // Résolution et qualité alignées sur ce qu'ImagePreparer enverrait: le JPEG capturé part tel quel
+        int longEdge = ImagePreparer.DEFAULT_MAX_LONG_EDGE;
+        int shortEdge = longEdge * 3 / 4;
+        boolean portrait = getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
         imageCapture = new ImageCapture.Builder()
                 .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                .setTargetResolution(portrait ? new Size(shortEdge, longEdge) : new Size(longEdge, shortEdge))
+                .setJpegQuality(CAPTURE_JPEG_QUALITY)
                 .build();
 
         CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
@@ -129,39 +152,54 @@ public class CameraActivity extends AppCompatActivity {
     private void captureImage() {
         if (imageCapture == null) return;
 
-        File photoFile = new File(getExternalFilesDir(null), "prayer_times_" + System.currentTimeMillis() + ".jpg");
-
-        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(photoFile).build();
-
-        imageCapture.takePicture(outputOptions, ContextCompat.getMainExecutor(this),
-                new ImageCapture.OnImageSavedCallback() {
-                    @Override
-                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
-                        Uri savedUri = Uri.fromFile(photoFile);
-                        String msg = getString(R.string.photo_captured, savedUri);
-                        showToast(msg);
-                        Log.d(TAG, msg);
-
-                        // Charger l'image capturée
-                        currentBitmap = BitmapFactory.decodeFile(photoFile.getAbsolutePath());
-                        if (currentBitmap != null) {
-                            imageViewCaptured.setImageBitmap(currentBitmap);
-                            imageViewCaptured.setVisibility(View.VISIBLE);
-                            previewView.setVisibility(View.GONE);
-                            textViewAnalysis.setText(getString(R.string.photo_captured_ready));
-                        }
-                    }
+        final int[] previewSize = previewTargetSize();
 
-                    @Override
-                    public void onError(@NonNull ImageCaptureException exception) {
-                        Log.e(TAG, "Erreur capture: " + exception.getMessage(), exception);
-                        showToast(getString(R.string.capture_error, exception.getMessage()));
+        // Capture en mémoire: ni fichier temporaire, ni décodage puis ré-encodage pour l'analyse
+        imageCapture.takePicture(cameraExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                try {
+                    final byte[] jpeg;
+                    try {
+                        jpeg = jpegBytes(image);
+                    } finally {
+                        image.close(); // le tampon retourne à la caméra au plus tôt
                     }
-                });
+                    showToast(getString(R.string.photo_captured));
+                    Log.d(TAG, "Photo capturée en mémoire: " + (jpeg.length / 1024) + " Ko");
+
+                    // Seul l'aperçu est décodé; l'analyse part du JPEG
+                    Bitmap preview = BitmapDecoder.decodePreview(() -> new ByteArrayInputStream(jpeg),
+                                                                 previewSize[0], previewSize[1]);
+                    runOnUiThread(() -> showImage(preview, null, jpeg, R.string.photo_captured_ready));
+                } catch (Exception e) {
+                    Log.e(TAG, "Erreur lecture capture", e);
+                    showToast(getString(R.string.toast_image_error, e.getMessage()));
+                }
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                Log.e(TAG, "Erreur capture: " + exception.getMessage(), exception);
+                showToast(getString(R.string.capture_error, exception.getMessage()));
+            }
+        });
+    }
+
+    /** Copie le JPEG du plan unique de l'ImageProxy (seule copie: l'ImageProxy doit être fermée vite). */
+    private static byte[] jpegBytes(ImageProxy image) throws IOException {
+        if (image.getFormat() != ImageFormat.JPEG) {
+            throw new IOException("Format de capture inattendu: " + image.getFormat());
+        }
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        buffer.rewind();
+        byte[] jpeg = new byte[buffer.remaining()];
+        buffer.get(jpeg);
+        return jpeg;
     }
 
     private void analyzeImage() {
-        if (currentBitmap == null) {
+        if (currentBitmap == null && currentJpeg == null) {
             showToast(getString(R.string.no_image_to_analyze));
             return;
         }
@@ -169,25 +207,45 @@ public class CameraActivity extends AppCompatActivity {
         textViewAnalysis.setText(getString(R.string.status_analyzing_image));
         btnAnalyze.setEnabled(false);
         
-        new Thread(() -> {
-            try {
-                String analysis = geminiVisionClient.extractPrayerTimesFromImage(currentBitmap);
-                
-                runOnUiThread(() -> {
-                    textViewAnalysis.setText(analysis);
-                    btnAnalyze.setEnabled(true);
-                    showToast(getString(R.string.analysis_complete));
-                });
-                
-            } catch (Exception e) {
+        // Une seule analyse à la fois; annulée si l'écran est fermé avant la réponse
+        if (analysisFuture != null) {
+            analysisFuture.cancel();
+        }
+        Deadline deadline = Deadline.in(ANALYSIS_DEADLINE_MS);
+        AiFuture<String> extraction = currentJpeg != null
+                ? geminiVisionClient.extractPrayerTimesFromJpegAsync(currentJpeg, deadline)
+                : geminiVisionClient.extractPrayerTimesFromImageAsync(currentBitmap, deadline);
+        // Enregistrement de la grille sur le thread de l'analyse, avant le retour à l'UI
+        analysisFuture = extraction.then(this::saveTimetable);
+        analysisFuture.whenComplete(new AiFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String analysis) {
+                textViewAnalysis.setText(analysis);
+                btnAnalyze.setEnabled(true);
+                showToast(getString(R.string.analysis_complete));
+            }
+
+            @Override
+            public void onError(Exception e) {
                 Log.e(TAG, "Erreur analyse image", e);
-                runOnUiThread(() -> {
-                    textViewAnalysis.setText(getString(R.string.analysis_error, e.getMessage()));
-                    btnAnalyze.setEnabled(true);
-                    showToast(getString(R.string.analysis_failed));
-                });
+                textViewAnalysis.setText(getString(R.string.analysis_error, e.getMessage()));
+                btnAnalyze.setEnabled(true);
+                showToast(getString(R.string.analysis_failed));
             }
-        }).start();
+        }, this::runOnUiThread);
+    }
+
+    /**
+     * Enregistre les jours relevés (consultés ensuite par PrayerTimesService) et renvoie
+     * le texte à afficher, sans le bloc structuré.
+     */
+    private String saveTimetable(String analysis) {
+        List<TimetableStore.DaySchedule> days = TimetableParser.parse(analysis);
+        String display = TimetableParser.stripBlock(analysis);
+        if (days.isEmpty()) return display;
+
+        int stored = TimetableStore.getDefault(this).putAll(days);
+        return display + "\n\n" + getString(R.string.timetable_saved, stored);
     }
 
     private void loadFromGallery() {
@@ -201,20 +259,46 @@ public class CameraActivity extends AppCompatActivity {
         
         if (requestCode == REQUEST_IMAGE_PICK && resultCode == RESULT_OK && data != null) {
             Uri selectedImage = data.getData();
+            loadBitmap(BitmapDecoder.fromUri(getContentResolver(), selectedImage), R.string.image_selected_ready);
+        }
+    }
+
+    /**
+     * Décode l'image sur cameraExecutor: aperçu à la taille de la vue, image d'analyse
+     * juste au-dessus de ce qu'ImagePreparer enverra à Gemini. L'UI n'est touchée qu'au retour.
+     */
+    private void loadBitmap(final BitmapDecoder.Source source, final int readyMessage) {
+        final int[] previewSize = previewTargetSize();
+
+        cameraExecutor.execute(() -> {
             try {
-                InputStream inputStream = getContentResolver().openInputStream(selectedImage);
-                currentBitmap = BitmapFactory.decodeStream(inputStream);
-                
-                imageViewCaptured.setImageBitmap(currentBitmap);
-                imageViewCaptured.setVisibility(View.VISIBLE);
-                previewView.setVisibility(View.GONE);
-                textViewAnalysis.setText(getString(R.string.image_selected_ready));
-                
+                BitmapDecoder.Decoded decoded = BitmapDecoder.decode(source, previewSize[0], previewSize[1],
+                                                                     ImagePreparer.DEFAULT_MAX_LONG_EDGE);
+                runOnUiThread(() -> showImage(decoded.preview, decoded.analysis, null, readyMessage));
             } catch (Exception e) {
-                Log.e(TAG, "Erreur chargement galerie", e);
+                Log.e(TAG, "Erreur chargement image", e);
                 showToast(getString(R.string.toast_image_error, e.getMessage()));
             }
-        }
+        });
+    }
+
+    /** Dimensions de l'aperçu, lues sur le thread UI: la vue visible des deux, sinon l'écran. */
+    private int[] previewTargetSize() {
+        View target = imageViewCaptured.getWidth() > 0 ? imageViewCaptured : previewView;
+        int width = target.getWidth() > 0 ? target.getWidth() : getResources().getDisplayMetrics().widthPixels;
+        int height = target.getHeight() > 0 ? target.getHeight() : getResources().getDisplayMetrics().heightPixels;
+        return new int[] {width, height};
+    }
+
+    /** Thread UI: affiche l'aperçu et retient la source d'analyse (Bitmap ou JPEG de capture). */
+    private void showImage(Bitmap preview, Bitmap analysis, byte[] jpeg, int readyMessage) {
+        if (isFinishing() || isDestroyed()) return;
+        currentBitmap = analysis;
+        currentJpeg = jpeg;
+        imageViewCaptured.setImageBitmap(preview);
+        imageViewCaptured.setVisibility(View.VISIBLE);
+        previewView.setVisibility(View.GONE);
+        textViewAnalysis.setText(getString(readyMessage));
     }
 
     private void showToast(String message) {
@@ -224,6 +308,9 @@ public class CameraActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (analysisFuture != null) {
+            analysisFuture.cancel();
+        }
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
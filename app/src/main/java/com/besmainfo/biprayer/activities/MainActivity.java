@@ -30,6 +30,7 @@ public class MainActivity extends AppCompatActivity {
     private LinearLayout cardQuran, cardPrayerTimes, cardCamera, cardSettings;
     
     private GeminiBasicClient geminiClient;
+    private GeminiBasicClient.StreamHandle currentStream;
     private ExecutorService executor;
     private Handler mainHandler;
 
@@ -276,41 +277,53 @@ public class MainActivity extends AppCompatActivity {
                 buttonSend.setEnabled(false);
             }
 
-            executor.execute(() -> {
-                try {
-                    String response = geminiClient.callGemini(question);
+            // Réponse affichée au fil des fragments; la requête précédente éventuelle est abandonnée
+            if (currentStream != null) {
+                currentStream.cancel();
+            }
+            final StringBuilder streamed = new StringBuilder();
+            currentStream = geminiClient.streamGemini(question, new GeminiBasicClient.StreamListener() {
+                @Override
+                public void onChunk(String text) {
+                    streamed.append(text);
+                    if (textViewResponse != null) {
+                        textViewResponse.setText(streamed.toString());
+                    }
+                }
+
+                @Override
+                public void onComplete(String response) {
                     Log.d(TAG, "🤖 Réponse Gemini reçue");
-                    
-                    mainHandler.post(() -> {
-                        try {
-                            if (textViewResponse != null) {
-                                textViewResponse.setText(response);
-                            }
-                            if (buttonSend != null) {
-                                buttonSend.setEnabled(true);
-                            }
-                            
-                            if (response.contains("❌") || response.contains("🔧")) {
-                                updateStatus(getString(R.string.demo_mode));
-                            } else {
-                                updateStatus(getString(R.string.status_response_received));
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "❌ Erreur affichage réponse: " + e.getMessage(), e);
-                        }
-                    });
-                    
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Erreur askQuestion: " + e.getMessage(), e);
-                    mainHandler.post(() -> {
+                    currentStream = null;
+                    try {
                         if (textViewResponse != null) {
-                            textViewResponse.setText(getString(R.string.error_response, e.getMessage()));
+                            textViewResponse.setText(response);
                         }
                         if (buttonSend != null) {
                             buttonSend.setEnabled(true);
                         }
-                        updateStatus(getString(R.string.error));
-                    });
+
+                        if (response.contains("❌") || response.contains("🔧")) {
+                            updateStatus(getString(R.string.demo_mode));
+                        } else {
+                            updateStatus(getString(R.string.status_response_received));
+                        }
+                    } catch (Exception e) {
+                        Log.e(TAG, "❌ Erreur affichage réponse: " + e.getMessage(), e);
+                    }
+                }
+
+                @Override
+                public void onError(String message) {
+                    Log.e(TAG, "❌ Erreur askQuestion: " + message);
+                    currentStream = null;
+                    if (textViewResponse != null) {
+                        textViewResponse.setText(getString(R.string.error_response, message));
+                    }
+                    if (buttonSend != null) {
+                        buttonSend.setEnabled(true);
+                    }
+                    updateStatus(getString(R.string.error));
                 }
             });
             
@@ -373,6 +386,10 @@ public class MainActivity extends AppCompatActivity {
         super.onDestroy();
         Log.d(TAG, "🛑 Destruction de MainActivity");
         try {
+            if (currentStream != null) {
+                currentStream.cancel();
+                currentStream = null;
+            }
             if (executor != null && !executor.isShutdown()) {
                 executor.shutdown();
             }
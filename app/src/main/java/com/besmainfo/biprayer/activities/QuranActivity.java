@@ -53,7 +53,7 @@ public class QuranActivity extends AppCompatActivity {
     }
 
     private void initializeServices() {
-        quranService = new QuranService();
+        quranService = new QuranService(this);
         Log.d(TAG, "Services Coran initialisés");
     }
 
@@ -11,26 +11,32 @@ import android.widget.*;
 import com.besmainfo.biprayer.R;
 
 import androidx.appcompat.app.AppCompatActivity;
+import com.besmainfo.biprayer.ai.AiFuture;
+import com.besmainfo.biprayer.ai.Deadline;
 import com.besmainfo.biprayer.ai.GeminiBasicClient;
 import com.besmainfo.biprayer.ai.OpusClient;
 import com.besmainfo.biprayer.ai.QdrantClient;
+import com.besmainfo.biprayer.services.PrayerTimesService;
+import com.besmainfo.biprayer.services.TimetableStore;
 import com.besmainfo.biprayer.utils.ConfigReader;
 import com.besmainfo.biprayer.utils.LanguageHelper;
 
 public class SettingsActivity extends AppCompatActivity {
     
     private static final String TAG = "SettingsActivity";
+    private static final long API_TEST_DEADLINE_MS = 20000;
     
-    private CheckBox checkAutoDetect, checkNotifications, checkDarkMode;
+    private CheckBox checkAutoDetect, checkNotifications, checkDarkMode, checkScannedTimetable;
     private Spinner spinnerLanguage;
     private RadioGroup radioCalculationMethod;
     private EditText editLocationLat, editLocationLng;
     private TextView textApiStatus, textAppVersion;
-    private Button btnTestAPI, btnReset, btnSave, btnHelp;
+    private Button btnTestAPI, btnReset, btnSave, btnHelp, btnClearTimetable;
     
     private GeminiBasicClient geminiClient;
     private OpusClient opusClient;
     private QdrantClient qdrantClient;
+    private AiFuture<String> apiTest;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,6 +73,7 @@ public class SettingsActivity extends AppCompatActivity {
         checkAutoDetect = findViewById(R.id.checkAutoDetect);
         checkNotifications = findViewById(R.id.checkNotifications);
         checkDarkMode = findViewById(R.id.checkDarkMode);
+        checkScannedTimetable = findViewById(R.id.checkScannedTimetable);
         spinnerLanguage = findViewById(R.id.spinnerLanguage);
         radioCalculationMethod = findViewById(R.id.radioCalculationMethod);
         editLocationLat = findViewById(R.id.editLocationLat);
@@ -77,6 +84,7 @@ public class SettingsActivity extends AppCompatActivity {
         btnReset = findViewById(R.id.btnReset);
         btnSave = findViewById(R.id.btnSave);
         btnHelp = findViewById(R.id.btnHelp);
+        btnClearTimetable = findViewById(R.id.btnClearTimetable);
         
         // Configurer les textes
         checkAutoDetect.setText(getString(R.string.auto_detect));
@@ -117,6 +125,8 @@ public class SettingsActivity extends AppCompatActivity {
         // Autres préférences
         checkNotifications.setChecked(prefs.getBoolean("pref_notifications", true));
         checkDarkMode.setChecked(prefs.getBoolean("pref_dark_mode", false));
+        checkScannedTimetable.setChecked(prefs.getBoolean(PrayerTimesService.PREF_USE_SCANNED_TIMETABLE, true));
+        updateTimetableButton();
         
         // Méthode de calcul
         String calcMethod = prefs.getString("pref_calculation_method", "MWL");
@@ -141,24 +151,57 @@ public class SettingsActivity extends AppCompatActivity {
         btnReset.setOnClickListener(v -> resetSettings());
         btnSave.setOnClickListener(v -> saveSettings());
         btnHelp.setOnClickListener(v -> showHelp());
+        btnClearTimetable.setOnClickListener(v -> clearScannedTimetable());
+    }
+
+    /** Horaires relevés sur photo: remplacent le calcul tant qu'ils ne sont pas effacés ou désactivés. */
+    private void clearScannedTimetable() {
+        new android.app.AlertDialog.Builder(this)
+            .setTitle(getString(R.string.button_clear_timetable, TimetableStore.getDefault(this).size()))
+            .setMessage(getString(R.string.dialog_clear_timetable))
+            .setPositiveButton(getString(R.string.button_ok), (dialog, which) -> {
+                TimetableStore.getDefault(this).clear();
+                updateTimetableButton();
+                Toast.makeText(this, R.string.timetable_cleared, Toast.LENGTH_SHORT).show();
+            })
+            .setNegativeButton(getString(R.string.button_cancel), null)
+            .show();
+    }
+
+    private void updateTimetableButton() {
+        int days = TimetableStore.getDefault(this).size();
+        btnClearTimetable.setText(getString(R.string.button_clear_timetable, days));
+        btnClearTimetable.setEnabled(days > 0);
     }
     
     private void testAllAPIs() {
         btnTestAPI.setEnabled(false);
         textApiStatus.setText(getString(R.string.status_testing_apis));
         
-        new Thread(() -> {
+        // Gemini et Opus testés en parallèle, dans un même budget de temps
+        if (apiTest != null) {
+            apiTest.cancel();
+        }
+        final Deadline deadline = Deadline.in(API_TEST_DEADLINE_MS);
+        final AiFuture<String> geminiTest = geminiClient.testConnectionAsync(deadline);
+        final AiFuture<String> opusTest = opusClient.isConfigured() ? opusClient.testConnectionAsync(deadline) : null;
+
+        // Pas d'échéance propre: n'attend que les deux tests, eux-mêmes bornés
+        apiTest = AiFuture.supply(Deadline.none(), future -> {
+            future.onCancel(geminiTest::cancel);
+            if (opusTest != null) future.onCancel(opusTest::cancel);
+
             StringBuilder status = new StringBuilder();
             status.append("**").append(getString(R.string.api_status_title)).append("**\n\n");
             
             // Tester Gemini
-            String geminiStatus = geminiClient.testConnection();
+            String geminiStatus = geminiTest.getOrDefault("");
             boolean geminiWorking = geminiStatus.contains("✅") || geminiStatus.contains("Connecté");
             status.append("🤖 **Gemini AI:** ").append(geminiWorking ? "✅ " + getString(R.string.status_operational) : "❌ " + getString(R.string.status_error)).append("\n");
             
             // Tester Opus
-            if (opusClient.isConfigured()) {
-                String opusStatus = opusClient.testConnection();
+            if (opusTest != null) {
+                String opusStatus = opusTest.getOrDefault("");
                 boolean opusWorking = opusStatus.contains("✅") || opusStatus.contains("successful");
                 status.append("🎵 **Opus TTS:** ").append(opusWorking ? "✅ " + getString(R.string.status_operational) : "❌ " + getString(R.string.status_error)).append("\n");
             } else {
@@ -180,12 +223,32 @@ public class SettingsActivity extends AppCompatActivity {
                 status.append("⚠️ ").append(getString(R.string.demo_mode_active)).append("\n");
             }
             
-            runOnUiThread(() -> {
-                textApiStatus.setText(status.toString());
+            return status.toString();
+        });
+
+        apiTest.whenComplete(new AiFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String status) {
+                textApiStatus.setText(status);
+                btnTestAPI.setEnabled(true);
+                Toast.makeText(SettingsActivity.this, R.string.test_completed, Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Test des APIs interrompu", e);
+                textApiStatus.setText("❌ " + getString(R.string.status_error) + ": " + e.getMessage());
                 btnTestAPI.setEnabled(true);
-                Toast.makeText(this, R.string.test_completed, Toast.LENGTH_SHORT).show();
-            });
-        }).start();
+            }
+        }, this::runOnUiThread);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (apiTest != null) {
+            apiTest.cancel();
+        }
     }
     
     private void resetSettings() {
@@ -227,6 +290,7 @@ public class SettingsActivity extends AppCompatActivity {
     // Autres préférences
     editor.putBoolean("pref_notifications", checkNotifications.isChecked());
     editor.putBoolean("pref_dark_mode", checkDarkMode.isChecked());
+    editor.putBoolean(PrayerTimesService.PREF_USE_SCANNED_TIMETABLE, checkScannedTimetable.isChecked());
     
     // Méthode de calcul
     String calcMethod = getSelectedCalculationMethod();
@@ -0,0 +1,292 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Résultat asynchrone d'un appel IA, borné par une échéance et annulable
+ * (CompletableFuture et java.util.function demandent l'API 24, l'application vise minSdk 21).
+ *
+ * - L'échéance est surveillée par un minuteur partagé: la tâche échoue en TimeoutException
+ *   à l'heure dite, sans attendre les délais réseau.
+ * - cancel() ou l'échéance exécutent les actions enregistrées par onCancel() (connexions coupées)
+ *   et interrompent le thread de la tâche.
+ * - whenComplete() délivre le résultat sur l'executor choisi (ex. runOnUiThread), jamais après cancel().
+ */
+public final class AiFuture<T> {
+    private static final String TAG = "AiFuture";
+
+    /** Travail asynchrone; reçoit son propre futur pour y rattacher ses appels annulables. */
+    public interface Task<T> {
+        T run(AiFuture<T> future) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T value);
+        void onError(Exception error);
+    }
+
+    public interface Transform<T, R> {
+        R apply(T value) throws Exception;
+    }
+
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(daemonThreads("ai-async"));
+    private static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("ai-deadline"));
+
+    private enum State { PENDING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final Deadline deadline;
+    private State state = State.PENDING;
+    private boolean aborted = false;
+    private T value;
+    private Exception error;
+    private Thread worker;
+    private ScheduledFuture<?> timeout;
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    private AiFuture(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /** Lance la tâche sur le pool partagé; elle échoue en TimeoutException si l'échéance passe avant. */
+    public static <T> AiFuture<T> supply(Deadline deadline, final Task<T> task) {
+        final AiFuture<T> future = new AiFuture<>(deadline);
+        future.armTimeout();
+        WORKERS.execute(() -> future.runTask(task));
+        return future;
+    }
+
+    public static <T> AiFuture<T> completed(T value) {
+        AiFuture<T> future = new AiFuture<>(Deadline.none());
+        future.complete(value, null);
+        return future;
+    }
+
+    private void armTimeout() {
+        if (deadline.isNone()) return;
+        final long delayMs = deadline.remainingMs();
+        ScheduledFuture<?> scheduled = TIMER.schedule(() -> {
+            if (abort(State.FAILED, new TimeoutException("Échéance dépassée (" + delayMs + " ms)"))) {
+                Log.w(TAG, "⏱️ Échéance dépassée après " + delayMs + " ms");
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            if (state == State.PENDING) {
+                timeout = scheduled;
+                return;
+            }
+        }
+        scheduled.cancel(false);
+    }
+
+    private void runTask(Task<T> task) {
+        synchronized (this) {
+            if (state != State.PENDING) return;
+            worker = Thread.currentThread();
+        }
+        try {
+            complete(task.run(this), null);
+        } catch (Exception e) {
+            complete(null, e);
+        } finally {
+            synchronized (this) {
+                worker = null;
+            }
+            // Une interruption tardive (cancel) ne doit pas toucher la tâche suivante du pool
+            Thread.interrupted();
+        }
+    }
+
+    private boolean complete(T result, Exception failure) {
+        List<Runnable> toNotify;
+        synchronized (this) {
+            if (state != State.PENDING) return false;
+            state = failure == null ? State.SUCCEEDED : State.FAILED;
+            value = result;
+            error = failure;
+            toNotify = finish();
+        }
+        runAll(toNotify);
+        return true;
+    }
+
+    /** Annulation ou échéance: interruption de la tâche, actions d'annulation, puis écouteurs. */
+    private boolean abort(State finalState, Exception failure) {
+        List<Runnable> hooks;
+        List<Runnable> toNotify;
+        synchronized (this) {
+            if (state != State.PENDING) return false;
+            state = finalState;
+            error = failure;
+            aborted = true;
+            hooks = new ArrayList<>(cancelHooks);
+            cancelHooks.clear();
+            // Sous le verrou: runTask remet worker à null sous ce même verrou, l'interruption ne peut
+            // donc atteindre le thread que tant qu'il exécute encore cette tâche
+            if (worker != null) worker.interrupt();
+            toNotify = finish();
+        }
+        runAll(hooks);
+        runAll(toNotify);
+        return true;
+    }
+
+    private List<Runnable> finish() {
+        if (timeout != null) timeout.cancel(false);
+        List<Runnable> toNotify = new ArrayList<>(listeners);
+        listeners.clear();
+        cancelHooks.clear();
+        notifyAll();
+        return toNotify;
+    }
+
+    private static void runAll(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Erreur dans une action asynchrone", e);
+            }
+        }
+    }
+
+    /** @return false si la tâche était déjà terminée */
+    public boolean cancel() {
+        return abort(State.CANCELLED, new CancellationException("Tâche annulée"));
+    }
+
+    /**
+     * Action exécutée si la tâche est annulée ou dépasse son échéance (ex. call::cancel).
+     * Exécutée tout de suite si c'est déjà le cas, oubliée si la tâche a abouti.
+     */
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                cancelHooks.add(hook);
+                return;
+            }
+            if (!aborted) return;
+        }
+        hook.run();
+    }
+
+    private void addListener(Runnable listener) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Attend le résultat (au plus jusqu'à l'échéance).
+     * @throws CancellationException si annulée, TimeoutException si l'échéance est passée,
+     *         sinon l'exception levée par la tâche
+     */
+    public T get() throws Exception {
+        synchronized (this) {
+            while (state == State.PENDING) {
+                wait();
+            }
+            if (state == State.SUCCEEDED) return value;
+            throw error;
+        }
+    }
+
+    /** Résultat, ou fallback en cas d'échec, d'échéance ou d'annulation. */
+    public T getOrDefault(T fallback) {
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    /** Rappel unique sur l'executor donné; rien n'est délivré si la tâche a été annulée. */
+    public AiFuture<T> whenComplete(final Callback<T> callback, final Executor executor) {
+        addListener(() -> executor.execute(() -> {
+            State finalState;
+            T result;
+            Exception failure;
+            synchronized (AiFuture.this) {
+                finalState = state;
+                result = value;
+                failure = error;
+            }
+            if (finalState == State.SUCCEEDED) {
+                callback.onSuccess(result);
+            } else if (finalState == State.FAILED) {
+                callback.onError(failure);
+            }
+        }));
+        return this;
+    }
+
+    /** Étape suivante, exécutée à la fin de celle-ci; annuler le résultat annule aussi la source. */
+    public <R> AiFuture<R> then(final Transform<T, R> transform) {
+        final AiFuture<R> next = new AiFuture<>(deadline);
+        next.onCancel(this::cancel);
+        addListener(() -> {
+            State finalState;
+            T result;
+            Exception failure;
+            synchronized (AiFuture.this) {
+                finalState = state;
+                result = value;
+                failure = error;
+            }
+            if (finalState == State.CANCELLED) {
+                next.cancel();
+            } else if (finalState == State.FAILED) {
+                next.complete(null, failure);
+            } else {
+                try {
+                    next.complete(transform.apply(result), null);
+                } catch (Exception e) {
+                    next.complete(null, e);
+                }
+            }
+        });
+        return next;
+    }
+
+    static ThreadFactory daemonThreads(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
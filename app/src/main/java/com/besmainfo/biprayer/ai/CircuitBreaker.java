@@ -0,0 +1,150 @@
+package com.besmainfo.biprayer.ai;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Disjoncteur par modèle sur une fenêtre glissante des derniers appels:
+ * - CLOSED: appels autorisés, ouverture si trop d'échecs (taux ou échecs consécutifs);
+ * - OPEN: appels refusés pendant OPEN_DURATION_MS;
+ * - HALF_OPEN: un seul appel d'essai, qui referme ou rouvre le circuit.
+ * Chaque admission reçoit un jeton (génération de l'état): un appel admis avant un changement d'état
+ * n'a plus de verdict à rendre, il ne peut ni fermer ni rouvrir le circuit, ni libérer l'essai d'un autre.
+ * Garde aussi les latences des derniers succès pour le seuil de requête doublée (p95).
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Jeton de allowRequest() quand l'appel est refusé */
+    public static final long REFUSED = -1;
+
+    private static final int WINDOW = 20;
+    private static final int MIN_SAMPLES = 5;
+    private static final float FAILURE_RATE_THRESHOLD = 0.5f;
+    private static final int CONSECUTIVE_FAILURES_THRESHOLD = 3;
+    private static final long OPEN_DURATION_MS = 30000;
+
+    private final String name;
+    private final boolean[] outcomes = new boolean[WINDOW]; // true = échec
+    private int outcomeCount = 0;
+    private int outcomePosition = 0;
+    private final long[] latencies = new long[WINDOW];
+    private int latencyCount = 0;
+    private int latencyPosition = 0;
+
+    private int consecutiveFailures = 0;
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+    /** Incrémentée à chaque changement d'état et à chaque appel d'essai accordé */
+    private long generation = 0;
+
+    public CircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Admission d'un appel (en HALF_OPEN, réserve l'unique appel d'essai).
+     * @return jeton à rendre avec le verdict (recordSuccess/Failure/Ignored), ou REFUSED
+     */
+    public synchronized long allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < OPEN_DURATION_MS) return REFUSED;
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return ++generation;
+            default:
+                if (trialInFlight) return REFUSED;
+                trialInFlight = true;
+                return ++generation;
+        }
+    }
+
+    /**
+     * @param token jeton de allowRequest(); ignoré s'il date d'un autre état
+     * @param latencyMs durée de l'appel, ou -1 si elle n'est pas comparable (streaming)
+     */
+    public synchronized void recordSuccess(long token, long latencyMs) {
+        if (token != generation) return;
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            generation++;
+            trialInFlight = false;
+            outcomeCount = 0; // les échecs d'avant l'ouverture ne comptent plus
+        }
+        pushOutcome(false);
+        if (latencyMs >= 0) {
+            latencies[latencyPosition] = latencyMs;
+            latencyPosition = (latencyPosition + 1) % WINDOW;
+            if (latencyCount < WINDOW) latencyCount++;
+        }
+    }
+
+    public synchronized void recordFailure(long token) {
+        if (token != generation) return;
+        consecutiveFailures++;
+        pushOutcome(true);
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED
+                && (consecutiveFailures >= CONSECUTIVE_FAILURES_THRESHOLD
+                    || (outcomeCount >= MIN_SAMPLES && failureRate() >= FAILURE_RATE_THRESHOLD))) {
+            open();
+        }
+    }
+
+    /** Appel sans verdict sur le modèle (annulé, réseau, quota): libère seulement l'essai éventuel. */
+    public synchronized void recordIgnored(long token) {
+        if (token != generation) return;
+        trialInFlight = false;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        generation++;
+        openedAt = System.currentTimeMillis();
+        trialInFlight = false;
+    }
+
+    private void pushOutcome(boolean failure) {
+        outcomes[outcomePosition] = failure;
+        outcomePosition = (outcomePosition + 1) % WINDOW;
+        if (outcomeCount < WINDOW) outcomeCount++;
+    }
+
+    private float failureRate() {
+        if (outcomeCount == 0) return 0f;
+        int failures = 0;
+        for (int i = 0; i < outcomeCount; i++) {
+            if (outcomes[(outcomePosition - 1 - i + WINDOW) % WINDOW]) failures++;
+        }
+        return (float) failures / outcomeCount;
+    }
+
+    /** @return latence au percentile demandé (0..1) sur les succès récents, -1 si trop peu d'échantillons */
+    public synchronized long latencyPercentile(double percentile) {
+        if (latencyCount < MIN_SAMPLES) return -1;
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= OPEN_DURATION_MS) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: %s, échecs %.0f%% sur %d, p95 %d ms",
+                             name, getState(), failureRate() * 100, outcomeCount, latencyPercentile(0.95));
+    }
+}
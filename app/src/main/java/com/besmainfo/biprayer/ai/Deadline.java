@@ -0,0 +1,59 @@
+package com.besmainfo.biprayer.ai;
+
+/**
+ * Échéance absolue partagée par toutes les étapes d'une opération:
+ * chaque appel réseau prend son délai dans ce qui reste, au lieu d'avoir le sien.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long expiresAt;
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public static Deadline in(long delayMs) {
+        long now = System.currentTimeMillis();
+        if (delayMs >= Long.MAX_VALUE - now) return NONE;
+        return new Deadline(now + Math.max(0, delayMs));
+    }
+
+    /** Pas d'échéance (travail de fond). */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isNone() {
+        return expiresAt == Long.MAX_VALUE;
+    }
+
+    public long remainingMs() {
+        if (isNone()) return Long.MAX_VALUE;
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    public boolean isExpired() {
+        return remainingMs() == 0;
+    }
+
+    /** Délai réseau d'un appel: maxMs, raccourci au temps restant (au moins 1 ms). */
+    public int timeoutMs(int maxMs) {
+        return (int) Math.max(1, Math.min(maxMs, remainingMs()));
+    }
+
+    /** Échéance la plus proche des deux (une étape ne dépasse jamais le budget global). */
+    public Deadline min(Deadline other) {
+        return other.expiresAt < expiresAt ? other : this;
+    }
+
+    /** Sous-échéance: delayMs à partir de maintenant, sans dépasser celle-ci. */
+    public Deadline shorter(long delayMs) {
+        return min(in(delayMs));
+    }
+
+    @Override
+    public String toString() {
+        return isNone() ? "sans échéance" : remainingMs() + " ms restants";
+    }
+}
@@ -1,26 +1,70 @@
 package com.besmainfo.biprayer.ai;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import com.besmainfo.biprayer.utils.LanguageHelper;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GeminiBasicClient {
     private static final String TAG = "GeminiBasicClient";
+    private static final String API_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/";
+    private static final SingleFlight<String, GeminiResult> GEMINI_FLIGHTS = new SingleFlight<>("Gemini");
+
+    // Santé des modèles partagée par tous les clients du processus
+    private static final ConcurrentHashMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+    private static final ExecutorService ATTEMPT_EXECUTOR = Executors.newCachedThreadPool();
+    // Flux partagés par tous les clients: threads démons, rien à arrêter quand l'activité se ferme
+    private static final ExecutorService STREAM_EXECUTOR =
+            Executors.newCachedThreadPool(AiFuture.daemonThreads("gemini-stream"));
+    private static final AtomicLong HEDGES_SENT = new AtomicLong();
+    private static final AtomicLong HEDGES_WON = new AtomicLong();
     private final String apiKey;
     private final Context context;
-    private String workingModel = null;
+    private final HttpTransport transport = HttpTransport.getDefault();
+    private final ResponseCache responseCache;
+    private final GeminiRateLimiter rateLimiter = GeminiRateLimiter.getDefault();
+    private final AtomicReference<String> workingModel = new AtomicReference<>();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Sélection persistée (app_prefs), valable MODEL_SELECTION_TTL_MS pour la même clé API
+    private static final String PREF_MODEL = "pref_gemini_model";
+    private static final String PREF_MODEL_LATENCY = "pref_gemini_model_latency_ms";
+    private static final String PREF_MODEL_CHECKED_AT = "pref_gemini_model_checked_at";
+    private static final String PREF_MODEL_KEY = "pref_gemini_model_key";
+    private static final long MODEL_SELECTION_TTL_MS = 24L * 60 * 60 * 1000;
+    private static final int PROBE_TIMEOUT_MS = 8000;
+
+    // Borne du pire cas de callGemini, tous modèles confondus
+    private static final long CALL_DEADLINE_MS = 30000;
+    private static final int ATTEMPT_TIMEOUT_MS = 15000;
+    private static final long MIN_ATTEMPT_MS = 2000;
+    private static final long DEFAULT_HEDGE_DELAY_MS = 4000;
+    private static final long MIN_HEDGE_DELAY_MS = 800;
 
     // ✅ NOUVEAUX MODÈLES 2025
     private static final String[] GEMINI_MODELS = {
@@ -34,8 +78,11 @@ public class GeminiBasicClient {
     public GeminiBasicClient(Context context, String apiKey) {
         this.context = context;
         this.apiKey = apiKey;
+        this.responseCache = ResponseCache.getDefault(context);
         Log.d(TAG, "Client initialisé avec nouveau format d'authentification");
-        testAllModels();
+        if (!loadPersistedModel()) {
+            testAllModels();
+        }
     }
 
     // ============================================================
@@ -74,175 +121,876 @@ public class GeminiBasicClient {
             Log.w(TAG, "Clé API invalide, skip test des modèles");
             return;
         }
-        
+        if (!probing.compareAndSet(false, true)) {
+            return;
+        }
+
         executor.submit(() -> {
-            for (String model : GEMINI_MODELS) {
-                if (testModel(model)) {
-                    workingModel = model;
-                    Log.i(TAG, "✅ Modèle sélectionné: " + model);
-                    break;
-                }
-            }
-            
-            if (workingModel == null) {
-                Log.w(TAG, "⚠️ Aucun modèle Gemini disponible");
+            try {
+                probeModels();
+            } finally {
+                probing.set(false);
             }
         });
     }
 
-    private boolean testModel(String model) {
-        HttpURLConnection conn = null;
+    /**
+     * Teste tous les modèles en parallèle et retient le premier modèle sain dans l'ordre de GEMINI_MODELS:
+     * on n'attend que les modèles prioritaires, les sondes restantes sont annulées.
+     */
+    private void probeModels() {
+        int count = GEMINI_MODELS.length;
+        ExecutorService probes = Executors.newFixedThreadPool(count);
+        List<HttpTransport.Call> calls = new ArrayList<>(count);
+        List<Future<Long>> latencies = new ArrayList<>(count);
+        long start = System.currentTimeMillis();
+
         try {
-            // ✅ NOUVELLE URL sans paramètre key
-            String urlString = "https://generativelanguage.googleapis.com/v1beta/models/" + model + ":generateContent";
-            URL url = new URL(urlString);
-            conn = (HttpURLConnection) url.openConnection();
-
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            // ✅ NOUVEAU HEADER d'authentification
-            conn.setRequestProperty("X-goog-api-key", apiKey);
-            conn.setConnectTimeout(8000);
-            conn.setReadTimeout(8000);
-            conn.setDoOutput(true);
-
-            String jsonRequest = "{\"contents\":[{\"parts\":[{\"text\":\"Test\"}]}]}";
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(jsonRequest.getBytes(StandardCharsets.UTF_8));
+            for (final String model : GEMINI_MODELS) {
+                final HttpTransport.Call call = transport.newCall(newProbeRequest(model));
+                calls.add(call);
+                latencies.add(probes.submit(() -> testModel(model, call)));
+            }
+
+            for (int i = 0; i < count; i++) {
+                long latency = awaitProbe(latencies.get(i));
+                if (latency >= 0) {
+                    workingModel.set(GEMINI_MODELS[i]);
+                    persistModel(GEMINI_MODELS[i], latency);
+                    Log.i(TAG, "✅ Modèle sélectionné: " + GEMINI_MODELS[i] + " (" + latency + " ms, sondage "
+                            + (System.currentTimeMillis() - start) + " ms)");
+                    return;
+                }
             }
+            Log.w(TAG, "⚠️ Aucun modèle Gemini disponible");
+        } finally {
+            for (HttpTransport.Call call : calls) {
+                call.cancel();
+            }
+            probes.shutdownNow();
+        }
+    }
 
-            int responseCode = conn.getResponseCode();
-            Log.d(TAG, "Test modèle " + model + ": HTTP " + responseCode);
-            
-            return responseCode == 200;
+    private long awaitProbe(Future<Long> probe) {
+        try {
+            return probe.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException e) {
+            return -1;
+        }
+    }
+
+    /** @return latence en ms si le modèle répond HTTP 200, -1 sinon */
+    private long testModel(String model, HttpTransport.Call call) throws InterruptedException {
+        GeminiRateLimiter.Permit permit = rateLimiter.acquire(GeminiRateLimiter.Lane.BACKGROUND, PROBE_TIMEOUT_MS);
+        if (permit == null) {
+            Log.d(TAG, "Test modèle " + model + ": limiteur saturé");
+            return -1;
+        }
+        if (call.isCanceled()) {
+            permit.abandon();
+            return -1;
+        }
+
+        long start = System.currentTimeMillis();
+        GeminiResult outcome = null;
+        try (HttpTransport.Response response = call.execute()) {
+            int responseCode = response.code;
+            long latency = System.currentTimeMillis() - start;
+            Log.d(TAG, "Test modèle " + model + ": HTTP " + responseCode + " (" + latency + " ms)");
+
+            if (responseCode == 200) {
+                outcome = GeminiResult.success(model, "");
+                return latency;
+            }
+            outcome = GeminiResult.failure(model, GeminiResult.classify(responseCode, null), responseCode, null,
+                                           parseRetryAfter(response.header("Retry-After")));
+            return -1;
 
         } catch (Exception e) {
-            Log.d(TAG, "Test modèle " + model + ": ❌ Exception - " + e.getMessage());
-            return false;
+            if (!call.isCanceled()) {
+                Log.d(TAG, "Test modèle " + model + ": ❌ Exception - " + e.getMessage());
+            }
+            return -1;
         } finally {
-            if (conn != null) conn.disconnect();
+            permit.release(outcome);
         }
     }
 
+    private HttpTransport.Request newProbeRequest(String model) {
+        String jsonRequest = "{\"contents\":[{\"parts\":[{\"text\":\"Test\"}]}]}";
+        return newRequest(model, PROBE_TIMEOUT_MS).body(jsonRequest);
+    }
+
+    // ============================================================
+    //  SÉLECTION PERSISTÉE
+    // ============================================================
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+
+    /** Empreinte de la clé API: une nouvelle clé invalide la sélection sans stocker la clé elle-même. */
+    private String keyFingerprint() {
+        return Integer.toHexString(apiKey.hashCode()) + ":" + apiKey.length();
+    }
+
+    private boolean loadPersistedModel() {
+        if (!isApiKeyValid()) return false;
+        try {
+            SharedPreferences prefs = getPrefs();
+            String model = prefs.getString(PREF_MODEL, null);
+            long checkedAt = prefs.getLong(PREF_MODEL_CHECKED_AT, 0L);
+            long age = System.currentTimeMillis() - checkedAt;
+
+            if (model == null || age < 0 || age > MODEL_SELECTION_TTL_MS
+                    || !keyFingerprint().equals(prefs.getString(PREF_MODEL_KEY, null))) {
+                return false;
+            }
+            for (String known : GEMINI_MODELS) {
+                if (known.equals(model)) {
+                    workingModel.set(model);
+                    Log.i(TAG, "✅ Modèle mémorisé: " + model + " (" + prefs.getLong(PREF_MODEL_LATENCY, -1L)
+                            + " ms, vérifié il y a " + (age / 60000) + " min)");
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Lecture sélection modèle impossible: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private void persistModel(String model, long latencyMs) {
+        try {
+            getPrefs().edit()
+                    .putString(PREF_MODEL, model)
+                    .putLong(PREF_MODEL_LATENCY, latencyMs)
+                    .putLong(PREF_MODEL_CHECKED_AT, System.currentTimeMillis())
+                    .putString(PREF_MODEL_KEY, keyFingerprint())
+                    .apply();
+        } catch (Exception e) {
+            Log.w(TAG, "Sauvegarde sélection modèle impossible: " + e.getMessage());
+        }
+    }
+
+    private void clearPersistedModel() {
+        try {
+            getPrefs().edit()
+                    .remove(PREF_MODEL)
+                    .remove(PREF_MODEL_LATENCY)
+                    .remove(PREF_MODEL_CHECKED_AT)
+                    .remove(PREF_MODEL_KEY)
+                    .apply();
+        } catch (Exception e) {
+            Log.w(TAG, "Effacement sélection modèle impossible: " + e.getMessage());
+        }
+    }
+
+    /**
+     * POST generateContent (✅ clé API en en-tête, pas dans l'URL), connexion réutilisée par le transport.
+     */
+    private HttpTransport.Request newRequest(String model, int timeoutMs) {
+        return new HttpTransport.Request("POST", API_BASE_URL + model + ":generateContent")
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("X-goog-api-key", apiKey)
+                .timeouts(timeoutMs, timeoutMs);
+    }
+
     // ============================================================
     //  APPEL PRINCIPAL - NOUVEAU FORMAT
     // ============================================================
     public String callGemini(String prompt) {
+        return callGemini(prompt, ResponseCache.DEFAULT_TTL_MS);
+    }
+
+    /**
+     * @param cacheTtlMs durée de validité de la réponse en cache (0 = pas de cache)
+     */
+    public String callGemini(String prompt, long cacheTtlMs) {
+        return callGemini(prompt, cacheTtlMs, GeminiRateLimiter.Lane.INTERACTIVE);
+    }
+
+    /**
+     * @param lane INTERACTIVE pour ce que l'utilisateur attend, BACKGROUND pour le travail de fond
+     */
+    public String callGemini(String prompt, long cacheTtlMs, GeminiRateLimiter.Lane lane) {
+        GeminiResult result = generateContent(prompt, cacheTtlMs, lane);
+        if (result.isSuccess()) {
+            return result.text;
+        }
+        Log.e(TAG, "Échec Gemini " + result + ", fallback vers mode démo");
+        return getEnhancedDemoResponse(prompt);
+    }
+
+    /**
+     * Appel typé: succès ou catégorie d'erreur, sans repli démo.
+     * Durée totale bornée par CALL_DEADLINE_MS quel que soit le nombre de modèles essayés.
+     */
+    public GeminiResult generateContent(String prompt, long cacheTtlMs) {
+        return generateContent(prompt, cacheTtlMs, GeminiRateLimiter.Lane.INTERACTIVE);
+    }
+
+    public GeminiResult generateContent(String prompt, long cacheTtlMs, GeminiRateLimiter.Lane lane) {
         Log.d(TAG, "Appel Gemini: " + (prompt.length() > 50 ? prompt.substring(0, 50) + "..." : prompt));
         
+        final String language = LanguageHelper.getCurrentLanguage(context);
+        GeminiResult immediate = checkKeyAndCache(prompt, language, cacheTtlMs);
+        if (immediate != null) {
+            return immediate;
+        }
+
+        // Appels simultanés identiques: une seule requête réseau, résultat partagé
+        String flightKey = keyFingerprint() + "\u0000" + language + "\u0000" + ResponseCache.normalizePrompt(prompt);
+        try {
+            return GEMINI_FLIGHTS.execute(flightKey, () -> fetchFromModels(prompt, language, cacheTtlMs, lane,
+                                                                           Deadline.in(CALL_DEADLINE_MS), null));
+        } catch (Exception e) {
+            Log.e(TAG, "Exception appel Gemini: " + e.getMessage());
+            return GeminiResult.failure(workingModel.get(), GeminiResult.ErrorKind.TRANSIENT, -1, String.valueOf(e.getMessage()), -1);
+        }
+    }
+
+    /**
+     * Version asynchrone de generateContent: échoue en TimeoutException à l'échéance,
+     * cancel() coupe les requêtes en cours (modèle principal et requête doublée).
+     * Pas de regroupement SingleFlight: annuler cet appel ne doit pas faire échouer les autres appelants.
+     */
+    public AiFuture<GeminiResult> generateContentAsync(final String prompt, final long cacheTtlMs,
+                                                       final GeminiRateLimiter.Lane lane, Deadline deadline) {
+        Log.d(TAG, "Appel Gemini asynchrone (" + deadline + "): "
+                + (prompt.length() > 50 ? prompt.substring(0, 50) + "..." : prompt));
+        return AiFuture.supply(deadline, future -> {
+            String language = LanguageHelper.getCurrentLanguage(context);
+            GeminiResult immediate = checkKeyAndCache(prompt, language, cacheTtlMs);
+            if (immediate != null) {
+                return immediate;
+            }
+            return fetchFromModels(prompt, language, cacheTtlMs, lane,
+                                   future.getDeadline().shorter(CALL_DEADLINE_MS), future);
+        });
+    }
+
+    /** Texte de la réponse, ou réponse démo en cas d'échec (comme callGemini). */
+    public AiFuture<String> callGeminiAsync(final String prompt, Deadline deadline) {
+        return generateContentAsync(prompt, ResponseCache.DEFAULT_TTL_MS, GeminiRateLimiter.Lane.INTERACTIVE, deadline)
+                .then(result -> {
+                    if (result.isSuccess()) {
+                        return result.text;
+                    }
+                    Log.e(TAG, "Échec Gemini " + result + ", fallback vers mode démo");
+                    return getEnhancedDemoResponse(prompt);
+                });
+    }
+
+    /** @return échec AUTH si la clé est inutilisable, la réponse en cache si elle existe, sinon null */
+    private GeminiResult checkKeyAndCache(String prompt, String language, long cacheTtlMs) {
         if (!isApiKeyValid()) {
             Log.w(TAG, "Clé API invalide, utilisation mode démo");
-            return getEnhancedDemoResponse(prompt);
+            return GeminiResult.failure(null, GeminiResult.ErrorKind.AUTH, -1, "Clé API manquante ou invalide", -1);
         }
-
-        // Essai avec modèle déjà détecté
-        if (workingModel != null) {
-            String result = callWithModel(prompt, workingModel);
-            if (!result.contains("❌")) {
-                return result;
-            } else {
-                Log.w(TAG, "Échec avec modèle " + workingModel + ", recherche alternative...");
-                workingModel = null;
+        if (cacheTtlMs > 0) {
+            String cached = getCachedResponse(prompt, language);
+            if (cached != null) {
+                return GeminiResult.success(workingModel.get(), cached);
             }
         }
+        return null;
+    }
 
-        // Fallback multi-modèles
-        for (String model : GEMINI_MODELS) {
-            try {
-                Log.d(TAG, "Essai avec modèle: " + model);
-                String result = callWithModel(prompt, model);
-                
-                if (!result.contains("❌")) {
-                    workingModel = model;
-                    Log.i(TAG, "✅ Réponse réussie avec modèle: " + model);
+    /**
+     * Modèle sélectionné d'abord, puis les autres dans l'ordre de priorité, en sautant les circuits ouverts.
+     * Si le modèle en cours dépasse sa latence p95, une requête doublée part vers le modèle sain suivant:
+     * la première réponse valide gagne, l'autre est annulée.
+     * Seuls les échecs propres à un modèle (introuvable, surchargé, trop lent) passent au suivant;
+     * clé refusée, quota, réseau ou requête invalide arrêtent les lancements, mais un essai encore
+     * en cours (requête doublée) peut toujours aboutir.
+     * @param scope tâche asynchrone propriétaire (null en synchrone): son annulation coupe les essais en cours
+     */
+    private GeminiResult fetchFromModels(String prompt, String language, long cacheTtlMs, GeminiRateLimiter.Lane lane,
+                                         Deadline deadline, AiFuture<?> scope) {
+        List<String> candidates = orderedModels();
+        ExecutorCompletionService<Attempt> completion = new ExecutorCompletionService<>(ATTEMPT_EXECUTOR);
+        final List<Attempt> launched = new CopyOnWriteArrayList<>();
+        if (scope != null) {
+            scope.onCancel(() -> {
+                for (Attempt attempt : launched) {
+                    attempt.call.cancel();
+                }
+            });
+        }
+        int next = 0;
+        int running = 0;
+        boolean hedged = false;
+        boolean stopped = false;
+        GeminiResult last = null;
+
+        try {
+            while (true) {
+                long remaining = deadline.remainingMs();
+                if (running == 0) {
+                    if (stopped) break;
+                    Attempt attempt = null;
+                    while (attempt == null && next < candidates.size() && remaining >= MIN_ATTEMPT_MS) {
+                        attempt = launchAttempt(completion, prompt, candidates.get(next++), deadline, lane);
+                    }
+                    if (attempt == null) break;
+                    launched.add(attempt);
+                    running++;
+                }
+
+                // Délai avant requête doublée: p95 du modèle en cours (une seule requête doublée par appel)
+                long wait = remaining;
+                if (!hedged && !stopped && running == 1 && next < candidates.size()) {
+                    wait = Math.min(remaining, hedgeDelay(launched.get(launched.size() - 1).model));
+                }
+
+                Future<Attempt> done;
+                try {
+                    done = completion.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (done == null) {
+                    if (deadline.remainingMs() < MIN_ATTEMPT_MS) {
+                        Log.w(TAG, "⏱️ Délai total dépassé");
+                        break;
+                    }
+                    Attempt hedge = null;
+                    while (hedge == null && !stopped && next < candidates.size()) {
+                        hedge = launchAttempt(completion, prompt, candidates.get(next++), deadline, lane);
+                    }
+                    hedged = true;
+                    if (hedge != null) {
+                        Log.i(TAG, "🔀 Requête doublée vers " + hedge.model);
+                        HEDGES_SENT.incrementAndGet();
+                        launched.add(hedge);
+                        running++;
+                    }
+                    continue;
+                }
+
+                running--;
+                Attempt attempt = getAttempt(done);
+                GeminiResult result = attempt.result;
+                recordOutcome(attempt);
+
+                if (result.isSuccess()) {
+                    if (hedged && launched.size() > 1 && attempt == launched.get(launched.size() - 1)) {
+                        HEDGES_WON.incrementAndGet();
+                    }
+                    adoptModel(attempt.model, attempt.latencyMs);
+                    cacheResponse(prompt, language, attempt.model, result.text, cacheTtlMs);
+                    Log.i(TAG, "✅ Réponse réussie avec modèle: " + attempt.model + " (" + attempt.latencyMs + " ms)");
                     return result;
-                } else {
-                    Log.w(TAG, "❌ Échec avec " + model + ": " + result);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Exception avec " + model + ": " + e.getMessage());
+
+                // Un échec définitif (clé, quota...) reste la réponse, même si un essai voisin échoue après
+                if (last == null || last.error.tryNextModel) {
+                    last = result;
+                }
+                Log.w(TAG, "Échec " + result);
+                if (result.error == GeminiResult.ErrorKind.MODEL_NOT_FOUND
+                        && workingModel.compareAndSet(attempt.model, null)) {
+                    clearPersistedModel();
+                }
+                if (!result.error.tryNextModel) {
+                    // Plus aucun lancement; on attend seulement l'essai voisin encore en cours
+                    stopped = true;
+                    if (running == 0) break;
+                }
+            }
+        } finally {
+            // Perdants de la course, appels restants et résultats non lus: connexion coupée, sans verdict
+            // sur le modèle, mais l'éventuel appel d'essai HALF_OPEN est rendu à son circuit
+            for (Attempt attempt : launched) {
+                if (attempt.recorded) continue;
+                if (attempt.result == null) {
+                    attempt.call.cancel();
+                }
+                breakerFor(attempt.model).recordIgnored(attempt.admission);
             }
         }
-        
-        Log.e(TAG, "❌ Tous les modèles ont échoué, fallback vers mode démo");
-        return getEnhancedDemoResponse(prompt);
+
+        if (last == null && launched.isEmpty() && deadline.remainingMs() >= MIN_ATTEMPT_MS) {
+            return GeminiResult.failure(null, GeminiResult.ErrorKind.TRANSIENT, -1, "Tous les circuits sont ouverts", -1);
+        }
+        return last != null ? last
+                : GeminiResult.failure(null, GeminiResult.ErrorKind.NETWORK, -1, "Délai total dépassé", -1);
+    }
+
+    /** Un essai sur un modèle: appel annulable et, une fois terminé, son résultat. */
+    private static final class Attempt {
+        final String model;
+        final HttpTransport.Call call;
+        /** Jeton d'admission du circuit du modèle */
+        final long admission;
+        volatile GeminiResult result;
+        volatile long latencyMs;
+        /** Verdict transmis au circuit (lu et écrit par le seul thread de fetchFromModels) */
+        boolean recorded;
+
+        Attempt(String model, HttpTransport.Call call, long admission) {
+            this.model = model;
+            this.call = call;
+            this.admission = admission;
+        }
+    }
+
+    /** @return l'essai lancé, ou null si le circuit du modèle refuse l'appel */
+    private Attempt launchAttempt(ExecutorCompletionService<Attempt> completion, String prompt, String model,
+                                  final Deadline deadline, GeminiRateLimiter.Lane lane) {
+        long admission = breakerFor(model).allowRequest();
+        if (admission == CircuitBreaker.REFUSED) {
+            Log.d(TAG, "⛔ Circuit ouvert, modèle ignoré: " + model);
+            return null;
+        }
+        Log.d(TAG, "Essai avec modèle: " + model);
+        int timeoutMs = deadline.timeoutMs(ATTEMPT_TIMEOUT_MS);
+        final Attempt attempt = new Attempt(model, transport.newCall(newGenerateRequest(prompt, model, timeoutMs)),
+                                            admission);
+        completion.submit(() -> {
+            attempt.result = throttledCall(attempt, lane, deadline);
+            return attempt;
+        });
+        return attempt;
+    }
+
+    /** Attend le limiteur (jusqu'au délai total) puis appelle le modèle; la latence mesurée exclut l'attente. */
+    private GeminiResult throttledCall(Attempt attempt, GeminiRateLimiter.Lane lane, Deadline deadline) {
+        GeminiRateLimiter.Permit permit;
+        try {
+            permit = rateLimiter.acquire(lane, deadline.remainingMs() - MIN_ATTEMPT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permit = null;
+        }
+        if (permit == null) {
+            return GeminiResult.failure(attempt.model, GeminiResult.ErrorKind.QUOTA, -1, "Limite de débit locale atteinte", -1);
+        }
+        if (attempt.call.isCanceled()) {
+            permit.abandon();
+            return GeminiResult.failure(attempt.model, GeminiResult.ErrorKind.NETWORK, -1, "Appel annulé", -1);
+        }
+
+        GeminiResult result = null;
+        try {
+            long start = System.currentTimeMillis();
+            result = callWithModel(attempt.call, attempt.model);
+            attempt.latencyMs = System.currentTimeMillis() - start;
+            return result;
+        } finally {
+            permit.release(attempt.call.isCanceled() ? null : result);
+        }
     }
 
-    private String callWithModel(String prompt, String model) {
-        HttpURLConnection conn = null;
+    private Attempt getAttempt(Future<Attempt> done) {
         try {
-            // ✅ NOUVELLE URL sans paramètre key
-            String urlString = "https://generativelanguage.googleapis.com/v1beta/models/" + model + ":generateContent";
-            URL url = new URL(urlString);
-            conn = (HttpURLConnection) url.openConnection();
-
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            // ✅ NOUVEAU HEADER d'authentification
-            conn.setRequestProperty("X-goog-api-key", apiKey);
-            conn.setConnectTimeout(15000);
-            conn.setReadTimeout(15000);
-            conn.setDoOutput(true);
-
-            String jsonRequest = "{\"contents\":[{\"parts\":[{\"text\":\"" + escapeJson(prompt) + "\"}]}]}";
-
-            Log.d(TAG, "Envoi JSON à " + model);
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(jsonRequest.getBytes(StandardCharsets.UTF_8));
+            return done.get();
+        } catch (Exception e) {
+            // callWithModel ne lève pas d'exception: ne devrait pas arriver
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Seuls les échecs imputables au modèle comptent pour son circuit. */
+    private void recordOutcome(Attempt attempt) {
+        attempt.recorded = true;
+        CircuitBreaker breaker = breakerFor(attempt.model);
+        GeminiResult result = attempt.result;
+        if (result.isSuccess()) {
+            breaker.recordSuccess(attempt.admission, attempt.latencyMs);
+        } else if (result.error.tryNextModel) {
+            breaker.recordFailure(attempt.admission);
+        } else {
+            breaker.recordIgnored(attempt.admission);
+        }
+    }
+
+    private long hedgeDelay(String model) {
+        long p95 = breakerFor(model).latencyPercentile(0.95);
+        if (p95 < 0) return DEFAULT_HEDGE_DELAY_MS;
+        return Math.max(MIN_HEDGE_DELAY_MS, Math.min(p95, ATTEMPT_TIMEOUT_MS));
+    }
+
+    /** Modèle retenu: celui qui répond, sauf si le modèle courant est toujours sain (simple course perdue). */
+    private void adoptModel(String model, long latencyMs) {
+        String current = workingModel.get();
+        if (model.equals(current)) return;
+        if (current == null || breakerFor(current).getState() != CircuitBreaker.State.CLOSED) {
+            if (workingModel.compareAndSet(current, model)) {
+                persistModel(model, latencyMs);
             }
+        }
+    }
+
+    private List<String> orderedModels() {
+        String selected = workingModel.get();
+        List<String> candidates = new ArrayList<>(GEMINI_MODELS.length + 1);
+        if (selected != null) candidates.add(selected);
+        for (String model : GEMINI_MODELS) {
+            if (!model.equals(selected)) candidates.add(model);
+        }
+        return candidates;
+    }
+
+    private static CircuitBreaker breakerFor(String model) {
+        CircuitBreaker breaker = BREAKERS.get(model);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(model);
+            breaker = BREAKERS.putIfAbsent(model, created);
+            if (breaker == null) breaker = created;
+        }
+        return breaker;
+    }
+
+    public String getModelHealthReport() {
+        StringBuilder report = new StringBuilder();
+        for (String model : GEMINI_MODELS) {
+            report.append(breakerFor(model)).append('\n');
+        }
+        report.append("Requêtes doublées: ").append(HEDGES_SENT.get())
+              .append(", gagnées: ").append(HEDGES_WON.get()).append('\n')
+              .append(rateLimiter.getStats());
+        return report.toString();
+    }
 
-            int responseCode = conn.getResponseCode();
+    private HttpTransport.Request newGenerateRequest(String prompt, String model, int timeoutMs) {
+        String jsonRequest = "{\"contents\":[{\"parts\":[{\"text\":\"" + escapeJson(prompt) + "\"}]}]}";
+        return newRequest(model, timeoutMs).body(jsonRequest);
+    }
+
+    private GeminiResult callWithModel(HttpTransport.Call call, String model) {
+        Log.d(TAG, "Envoi JSON à " + model);
+        try (HttpTransport.Response response = call.execute()) {
+            int responseCode = response.code;
             Log.d(TAG, "Code HTTP " + responseCode + " pour " + model);
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                responseCode == 200 ? conn.getInputStream() : conn.getErrorStream()
-            ));
-            
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            reader.close();
+            String body = response.bodyString();
 
             if (responseCode == 200) {
-                return extractTextFromResponse(response.toString());
-            } else {
-                // Essayer d'extraire le message d'erreur détaillé
                 try {
-                    JSONObject errorJson = new JSONObject(response.toString());
-                    String errorMsg = errorJson.getJSONObject("error").getString("message");
-                    return "❌ Erreur " + responseCode + " avec " + model + ": " + errorMsg;
+                    return GeminiResult.success(model, extractTextFromResponse(body));
                 } catch (Exception e) {
-                    return "❌ Erreur " + responseCode + " avec " + model + ": " + response.toString();
+                    // Pas de candidat: contenu bloqué ou réponse tronquée
+                    Log.e(TAG, "Erreur extraction JSON: " + e.getMessage());
+                    return GeminiResult.failure(model, GeminiResult.ErrorKind.BAD_REQUEST, responseCode,
+                                                "Réponse inexploitable: " + e.getMessage(), -1);
                 }
             }
 
+            // Essayer d'extraire le message d'erreur détaillé
+            String errorMsg = extractErrorMessage(body);
+            return GeminiResult.failure(model, GeminiResult.classify(responseCode, errorMsg), responseCode,
+                                        errorMsg, parseRetryAfter(response.header("Retry-After")));
+
+        } catch (IOException e) {
+            return GeminiResult.failure(model, e);
+        }
+    }
+
+    /** Retry-After en secondes (la forme date HTTP n'est pas utilisée par l'API). */
+    private long parseRetryAfter(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ============================================================
+    //  CACHE DES RÉPONSES
+    // ============================================================
+
+    /** Recherche sous le modèle courant, ou sous chaque modèle connu tant qu'aucun n'est sélectionné. */
+    private String getCachedResponse(String prompt, String language) {
+        String selected = workingModel.get();
+        String[] models = selected != null ? new String[]{selected} : GEMINI_MODELS;
+        for (String model : models) {
+            String cached = responseCache.get(ResponseCache.key(model, language, prompt));
+            if (cached != null) {
+                Log.d(TAG, "⚡ Réponse en cache (" + model + ")");
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /** Seules les vraies réponses du modèle sont mises en cache (jamais démo ni erreur). */
+    private void cacheResponse(String prompt, String language, String model, String response, long ttlMs) {
+        if (ttlMs <= 0 || response == null || response.isEmpty()) {
+            return;
+        }
+        responseCache.put(ResponseCache.key(model, language, prompt), response, ttlMs);
+    }
+
+    public String getCacheStats() {
+        return responseCache.getStats() + "\n" + GEMINI_FLIGHTS.getStats();
+    }
+
+    // ============================================================
+    //  STREAMING (streamGenerateContent, SSE)
+    // ============================================================
+
+    /**
+     * Reçoit les fragments de texte sur le thread principal, dans l'ordre d'arrivée.
+     */
+    public interface StreamListener {
+        void onChunk(String text);
+        void onComplete(String fullText);
+        void onError(String message);
+    }
+
+    /**
+     * Requête en cours: cancel() coupe la connexion, plus aucun rappel n'est délivré ensuite.
+     */
+    public static final class StreamHandle {
+        private volatile boolean canceled = false;
+        private volatile HttpTransport.Call call;
+
+        public void cancel() {
+            canceled = true;
+            HttpTransport.Call current = call;
+            if (current != null) current.cancel();
+        }
+
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        void attach(HttpTransport.Call call) {
+            this.call = call;
+            if (canceled) call.cancel();
+        }
+    }
+
+    /**
+     * Version streaming de callGemini: le texte arrive par fragments dès les premiers tokens générés.
+     * Même repli que callGemini (modèle suivant tant que rien n'a été affiché, puis mode démo).
+     */
+    public StreamHandle streamGemini(final String prompt, final StreamListener listener) {
+        final StreamHandle handle = new StreamHandle();
+        Log.d(TAG, "Streaming Gemini: " + (prompt.length() > 50 ? prompt.substring(0, 50) + "..." : prompt));
+
+        STREAM_EXECUTOR.submit(() -> {
+            if (!isApiKeyValid()) {
+                Log.w(TAG, "Clé API invalide, utilisation mode démo");
+                deliverComplete(handle, listener, getEnhancedDemoResponse(prompt));
+                return;
+            }
+
+            String language = LanguageHelper.getCurrentLanguage(context);
+            String cached = getCachedResponse(prompt, language);
+            if (cached != null) {
+                deliverComplete(handle, listener, cached);
+                return;
+            }
+
+            long deadline = System.currentTimeMillis() + CALL_DEADLINE_MS;
+            for (String model : orderedModels()) {
+                if (handle.isCanceled()) return;
+                if (deadline - System.currentTimeMillis() < MIN_ATTEMPT_MS) break;
+                CircuitBreaker breaker = breakerFor(model);
+                long admission = breaker.allowRequest();
+                if (admission == CircuitBreaker.REFUSED) continue;
+
+                long start = System.currentTimeMillis();
+                StreamOutcome outcome = streamWithModel(prompt, language, model, handle, listener);
+                if (outcome == StreamOutcome.DONE) {
+                    // Durée de génération complète: pas comparable aux latences de generateContent
+                    breaker.recordSuccess(admission, -1);
+                    adoptModel(model, System.currentTimeMillis() - start);
+                    return;
+                }
+                if (outcome == StreamOutcome.RETRY) {
+                    breaker.recordFailure(admission);
+                } else {
+                    breaker.recordIgnored(admission);
+                }
+                if (outcome == StreamOutcome.ABORTED) return;
+                if (outcome == StreamOutcome.FAILED) break;
+            }
+
+            Log.e(TAG, "❌ Échec streaming, fallback vers mode démo");
+            deliverComplete(handle, listener, getEnhancedDemoResponse(prompt));
+        });
+        return handle;
+    }
+
+    private enum StreamOutcome {
+        /** Réponse complète délivrée */
+        DONE,
+        /** Échec propre au modèle avant tout fragment: on peut essayer le suivant */
+        RETRY,
+        /** Échec non récupérable avant tout fragment (clé, quota, réseau): repli démo direct */
+        FAILED,
+        /** Annulé, ou échec après affichage partiel (erreur déjà signalée) */
+        ABORTED
+    }
+
+    private StreamOutcome streamWithModel(String prompt, String language, String model,
+                                          StreamHandle handle, StreamListener listener) {
+        String jsonRequest = "{\"contents\":[{\"parts\":[{\"text\":\"" + escapeJson(prompt) + "\"}]}]}";
+        HttpTransport.Request request = new HttpTransport.Request("POST",
+                API_BASE_URL + model + ":streamGenerateContent?alt=sse")
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Accept", "text/event-stream")
+                .header("X-goog-api-key", apiKey)
+                .timeouts(15000, 30000)
+                .body(jsonRequest);
+
+        GeminiRateLimiter.Permit permit;
+        try {
+            permit = rateLimiter.acquire(GeminiRateLimiter.Lane.INTERACTIVE, ATTEMPT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return StreamOutcome.ABORTED;
+        }
+        if (permit == null) {
+            Log.w(TAG, "🚦 Streaming " + model + ": limite de débit locale atteinte");
+            return StreamOutcome.FAILED;
+        }
+
+        HttpTransport.Call call = transport.newCall(request);
+        handle.attach(call);
+        long start = System.currentTimeMillis();
+        StringBuilder fullText = new StringBuilder();
+        GeminiResult outcome = null;
+
+        try (HttpTransport.Response response = call.execute()) {
+            if (response.code != 200) {
+                String errorMsg = extractErrorMessage(response.bodyString());
+                GeminiResult.ErrorKind kind = GeminiResult.classify(response.code, errorMsg);
+                outcome = GeminiResult.failure(model, kind, response.code, errorMsg,
+                                               parseRetryAfter(response.header("Retry-After")));
+                Log.w(TAG, "❌ Streaming " + model + ": " + kind + " HTTP " + response.code + " - " + errorMsg);
+                if (kind == GeminiResult.ErrorKind.MODEL_NOT_FOUND && workingModel.compareAndSet(model, null)) {
+                    clearPersistedModel();
+                }
+                return kind.tryNextModel ? StreamOutcome.RETRY : StreamOutcome.FAILED;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+            StringBuilder event = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data:")) {
+                    event.append(line.substring(5).trim());
+                } else if (line.isEmpty() && event.length() > 0) {
+                    dispatchEvent(event.toString(), fullText, start, model, handle, listener);
+                    event.setLength(0);
+                }
+            }
+            if (event.length() > 0) {
+                dispatchEvent(event.toString(), fullText, start, model, handle, listener);
+            }
+
+            if (handle.isCanceled()) return StreamOutcome.ABORTED;
+            if (fullText.length() == 0) {
+                Log.w(TAG, "❌ Streaming " + model + ": réponse vide");
+                return StreamOutcome.RETRY;
+            }
+
+            Log.i(TAG, "✅ Streaming terminé avec " + model + " (" + (System.currentTimeMillis() - start) + " ms)");
+            String text = fullText.toString().trim();
+            outcome = GeminiResult.success(model, text);
+            cacheResponse(prompt, language, model, text, ResponseCache.DEFAULT_TTL_MS);
+            deliverComplete(handle, listener, text);
+            return StreamOutcome.DONE;
+
         } catch (Exception e) {
-            return "❌ Exception avec " + model + ": " + e.getMessage();
+            if (handle.isCanceled()) {
+                Log.d(TAG, "Streaming annulé (" + model + ")");
+                return StreamOutcome.ABORTED;
+            }
+            Log.w(TAG, "❌ Exception streaming " + model + ": " + e.getMessage());
+            if (fullText.length() == 0) {
+                // Coupure réseau: inutile d'essayer un autre modèle; événement illisible: propre au modèle
+                return e instanceof IOException && !(e instanceof MalformedEventException)
+                        ? StreamOutcome.FAILED : StreamOutcome.RETRY;
+            }
+
+            final String message = "❌ Exception avec " + model + ": " + e.getMessage();
+            mainHandler.post(() -> {
+                if (!handle.isCanceled()) listener.onError(message);
+            });
+            return StreamOutcome.ABORTED;
         } finally {
-            if (conn != null) conn.disconnect();
+            permit.release(outcome);
+        }
+    }
+
+    private static final class MalformedEventException extends IOException {
+        MalformedEventException(String message) {
+            super(message);
         }
     }
 
+    private void dispatchEvent(String data, StringBuilder fullText, long start, String model,
+                               final StreamHandle handle, final StreamListener listener) throws IOException {
+        final String chunk;
+        try {
+            chunk = extractStreamText(new JSONObject(data));
+        } catch (Exception e) {
+            throw new MalformedEventException("Événement SSE illisible: " + e.getMessage());
+        }
+        if (chunk.isEmpty() || handle.isCanceled()) return;
+
+        if (fullText.length() == 0) {
+            Log.d(TAG, "⚡ Premier fragment " + model + " après " + (System.currentTimeMillis() - start) + " ms");
+        }
+        fullText.append(chunk);
+        mainHandler.post(() -> {
+            if (!handle.isCanceled()) listener.onChunk(chunk);
+        });
+    }
+
+    /** Concatène les parts texte du premier candidat d'un événement (peut être vide: fin, filtre...). */
+    private String extractStreamText(JSONObject event) throws Exception {
+        JSONArray candidates = event.optJSONArray("candidates");
+        if (candidates == null || candidates.length() == 0) return "";
+        JSONObject content = candidates.getJSONObject(0).optJSONObject("content");
+        if (content == null) return "";
+        JSONArray parts = content.optJSONArray("parts");
+        if (parts == null) return "";
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < parts.length(); i++) {
+            text.append(parts.getJSONObject(i).optString("text", ""));
+        }
+        return text.toString();
+    }
+
+    private String extractErrorMessage(String body) {
+        try {
+            return new JSONObject(body).getJSONObject("error").getString("message");
+        } catch (Exception e) {
+            return body;
+        }
+    }
+
+    private void deliverComplete(final StreamHandle handle, final StreamListener listener, final String fullText) {
+        mainHandler.post(() -> {
+            if (!handle.isCanceled()) listener.onComplete(fullText);
+        });
+    }
+
     // ============================================================
     //  MÉTHODES EXISTANTES (conservées)
     // ============================================================
     
-    private String extractTextFromResponse(String jsonResponse) {
-        try {
-            JSONObject json = new JSONObject(jsonResponse);
-            JSONArray candidates = json.getJSONArray("candidates");
-            JSONObject candidate = candidates.getJSONObject(0);
-            JSONObject content = candidate.getJSONObject("content");
-            JSONArray parts = content.getJSONArray("parts");
-            JSONObject part = parts.getJSONObject(0);
-            return part.getString("text").trim();
-        } catch (Exception e) {
-            Log.e(TAG, "Erreur extraction JSON: " + e.getMessage());
-            return "Erreur d'extraction: " + e.getMessage();
-        }
+    private String extractTextFromResponse(String jsonResponse) throws Exception {
+        JSONObject json = new JSONObject(jsonResponse);
+        JSONArray candidates = json.getJSONArray("candidates");
+        JSONObject candidate = candidates.getJSONObject(0);
+        JSONObject content = candidate.getJSONObject("content");
+        JSONArray parts = content.getJSONArray("parts");
+        JSONObject part = parts.getJSONObject(0);
+        return part.getString("text").trim();
     }
 
     private String escapeJson(String text) {
@@ -311,29 +1059,47 @@ public class GeminiBasicClient {
             return getStringResource("error_api_key_invalid", "❌ Clé API manquante ou invalide") + "\n\n" + getConfigurationHelp();
         }
 
-        if (workingModel != null) {
-            return getStringResource("connection_success", "✅ Connecté avec modèle: ") + workingModel;
+        String selected = workingModel.get();
+        if (selected != null) {
+            return getStringResource("connection_success", "✅ Connecté avec modèle: ") + selected;
         }
 
         try {
-            String result = callGemini("Test de connexion - réponse courte");
-            if (result.contains("❌")) {
-                return getStringResource("connection_failed", "❌ Échec de connexion: ") + result + "\n\n" + getConfigurationHelp();
-            } else {
-                return getStringResource("api_operational", "✅ Gemini API: Opérationnel") + 
-                       (workingModel != null ? " (" + getStringResource("model", "Modèle") + ": " + workingModel + ")" : "");
-            }
+            return describeConnection(generateContent("Test de connexion - réponse courte", 0));
         } catch (Exception e) {
             return getStringResource("error_general", "❌ Erreur: ") + e.getMessage() + "\n\n" + getConfigurationHelp();
         }
     }
 
+    /** Version asynchrone de testConnection, bornée par l'échéance donnée. */
+    public AiFuture<String> testConnectionAsync(Deadline deadline) {
+        if (!isApiKeyValid()) {
+            return AiFuture.completed(getStringResource("error_api_key_invalid", "❌ Clé API manquante ou invalide")
+                                      + "\n\n" + getConfigurationHelp());
+        }
+        String selected = workingModel.get();
+        if (selected != null) {
+            return AiFuture.completed(getStringResource("connection_success", "✅ Connecté avec modèle: ") + selected);
+        }
+        return generateContentAsync("Test de connexion - réponse courte", 0, GeminiRateLimiter.Lane.INTERACTIVE, deadline)
+                .then(this::describeConnection);
+    }
+
+    private String describeConnection(GeminiResult result) {
+        if (!result.isSuccess()) {
+            return getStringResource("connection_failed", "❌ Échec de connexion: ") + result + "\n\n" + getConfigurationHelp();
+        }
+        return getStringResource("api_operational", "✅ Gemini API: Opérationnel") + 
+               (result.model != null ? " (" + getStringResource("model", "Modèle") + ": " + result.model + ")" : "");
+    }
+
     public String getWorkingModel() {
-        return workingModel;
+        return workingModel.get();
     }
 
     public void resetModelSelection() {
-        workingModel = null;
+        workingModel.set(null);
+        clearPersistedModel();
         testAllModels();
     }
 }
\ No newline at end of file
@@ -1,146 +1,179 @@
 package com.besmainfo.biprayer.ai;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 import android.util.Log;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+
 
 public class GeminiMultimodalClient {
     private static final String TAG = "GeminiMultimodal";
+    private static final int ANALYSIS_TIMEOUT_MS = 30000;
+    private static final String PRAYER_TIMES_PROMPT =
+            "Analyze this image and extract prayer times if it's a prayer timetable. " +
+            "Look for Fajr, Dhuhr, Asr, Maghrib, Isha times. " +
+            "If no prayer times found, describe what you see in the image from a spiritual perspective.";
     private final String apiKey;
-
-    public GeminiMultimodalClient(String apiKey) {
+    private final HttpTransport transport = HttpTransport.getDefault();
+    private final ImagePreparer photoPreparer = new ImagePreparer(
+            ImagePreparer.DEFAULT_MAX_LONG_EDGE, ImagePreparer.DEFAULT_TARGET_BYTES, false);
+    private final ImagePreparer timetablePreparer = new ImagePreparer(
+            ImagePreparer.DEFAULT_MAX_LONG_EDGE, ImagePreparer.DEFAULT_TARGET_BYTES, true);
+    private final PerceptualImageCache timetableCache;
+
+    public GeminiMultimodalClient(Context context, String apiKey) {
         this.apiKey = apiKey;
+        this.timetableCache = PerceptualImageCache.getDefault(context);
         Log.d(TAG, "GeminiMultimodalClient initialized");
     }
 
     public String analyzeImageAndText(Bitmap image, String question) {
+        return analyze(() -> photoPreparer.prepare(image), question, null, Deadline.in(ANALYSIS_TIMEOUT_MS), null);
+    }
+
+    /**
+     * Version asynchrone: la requête est coupée à l'échéance ou sur cancel()
+     * (ex. l'utilisateur quitte l'écran pendant l'analyse).
+     */
+    public AiFuture<String> analyzeImageAndTextAsync(final Bitmap image, final String question, Deadline deadline) {
+        return AiFuture.supply(deadline,
+                future -> analyze(() -> photoPreparer.prepare(image), question, null, future.getDeadline(), future));
+    }
+
+    /** Image à envoyer, préparée seulement au moment de l'appel (sur le thread de travail). */
+    private interface ImageSource {
+        ImagePreparer.Prepared prepare() throws IOException;
+    }
+
+    /**
+     * @param cacheKey empreinte de l'image: la réponse du modèle y est mémorisée, ou null pour ne rien mémoriser
+     */
+    private String analyze(ImageSource image, String question, PerceptualImageCache.Hash cacheKey,
+                           Deadline deadline, AiFuture<?> scope) {
         if (!isApiKeyValid()) {
             return "❌ Gemini API key not configured";
         }
 
-        HttpURLConnection conn = null;
-        try {
-            String imageBase64 = bitmapToBase64(image);
-            
-            URL url = new URL(
-               "https://generativelanguage.googleapis.com/v1/models/gemini-pro-vision:generateContent?key=" + apiKey
-            );
-            
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(30000);
-            conn.setDoOutput(true);
-
-            JSONObject requestBody = new JSONObject();
-            JSONArray contents = new JSONArray();
-            JSONObject content = new JSONObject();
-            JSONArray parts = new JSONArray();
-
-            // Partie image
-            JSONObject imagePart = new JSONObject();
-            JSONObject imageData = new JSONObject();
-            imageData.put("mime_type", "image/jpeg");
-            imageData.put("data", imageBase64);
-            imagePart.put("inline_data", imageData);
-            parts.put(imagePart);
-
-            // Partie texte
-            JSONObject textPart = new JSONObject();
-            textPart.put("text", question);
-            parts.put(textPart);
-
-            content.put("parts", parts);
-            contents.put(content);
-            requestBody.put("contents", contents);
-
-            String jsonInput = requestBody.toString();
-
-            OutputStream os = conn.getOutputStream();
-            os.write(jsonInput.getBytes("utf-8"));
-            os.flush();
-            os.close();
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8")
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line.trim());
+        // L'image encodée reste disponible jusqu'à la fin de l'appel: le corps est écrit en flux
+        try (ImagePreparer.Prepared prepared = image.prepare()) {
+            HttpTransport.Request request = new HttpTransport.Request("POST",
+                    "https://generativelanguage.googleapis.com/v1/models/gemini-pro-vision:generateContent?key=" + apiKey)
+                    .header("Content-Type", "application/json; charset=UTF-8")
+                    .timeouts(deadline.timeoutMs(ANALYSIS_TIMEOUT_MS), deadline.timeoutMs(ANALYSIS_TIMEOUT_MS))
+                    .body(streamingBody(prepared, question));
+
+            try (HttpTransport.Response response = transport.execute(request, scope)) {
+                int responseCode = response.code;
+                if (responseCode == 200) {
+                    String text = extractTextFromResponse(response.bodyString());
+                    if (text == null) {
+                        return "⚠️ No text found in the AI response";
+                    }
+                    // Seules les vraies réponses du modèle sont mémorisées (pas les messages de repli)
+                    timetableCache.put(cacheKey, text);
+                    return text;
+                } else {
+                    Log.e(TAG, "HTTP error: " + responseCode);
+                    return getDemoPrayerTimes();
                 }
-                reader.close();
-
-                return extractTextFromResponse(response.toString());
-                
-            } else {
-                Log.e(TAG, "HTTP error: " + responseCode);
-                return getDemoPrayerTimes();
             }
 
         } catch (Exception e) {
+            if (scope != null && scope.isDone()) {
+                Log.d(TAG, "Analysis canceled or past its deadline");
+                return getDemoPrayerTimes();
+            }
             Log.e(TAG, "Analysis exception", e);
             return getDemoPrayerTimes();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
-    public String extractPrayerTimesFromImage(Bitmap image) {
-        String prompt = "Analyze this image and extract prayer times if it's a prayer timetable. " +
-                       "Look for Fajr, Dhuhr, Asr, Maghrib, Isha times. " +
-                       "If no prayer times found, describe what you see in the image from a spiritual perspective.";
+    /**
+     * Corps JSON écrit directement dans la connexion (transfert "chunked"): préfixe, image encodée
+     * en base64 au fil de l'eau, puis la question. Ni chaîne base64 ni JSON complet en mémoire:
+     * seulement le JPEG compressé et le tampon de l'encodeur.
+     */
+    private HttpTransport.BodyWriter streamingBody(final ImagePreparer.Prepared image, String question) {
+        final byte[] prefix = ("{\"contents\":[{\"parts\":[{\"inline_data\":{\"mime_type\":\""
+                + image.getMimeType() + "\",\"data\":\"").getBytes(StandardCharsets.UTF_8);
+        final byte[] suffix = ("\"}},{\"text\":" + JSONObject.quote(question) + "}]}]}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        return out -> {
+            out.write(prefix);
+            Base64OutputStream base64 = new Base64OutputStream(out, Base64.NO_WRAP | Base64.NO_CLOSE);
+            image.writeTo(base64);
+            base64.close(); // dernier bloc et remplissage "=", la connexion reste ouverte
+            out.write(suffix);
+        };
+    }
 
-        String result = analyzeImageAndText(image, prompt);
+    public String extractPrayerTimesFromImage(Bitmap image) {
+        String result = extractPrayerTimes(PerceptualImageCache.hash(image), () -> timetablePreparer.prepare(image),
+                                           Deadline.in(ANALYSIS_TIMEOUT_MS), null);
         return result;
     }
 
-    private String bitmapToBase64(Bitmap bitmap) {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, byteArrayOutputStream);
-        byte[] byteArray = byteArrayOutputStream.toByteArray();
-        return Base64.encodeToString(byteArray, Base64.DEFAULT);
+    /** Grille d'horaires: envoyée en niveaux de gris, seul le texte compte. */
+    public AiFuture<String> extractPrayerTimesFromImageAsync(final Bitmap image, Deadline deadline) {
+        return AiFuture.supply(deadline,
+                future -> extractPrayerTimes(PerceptualImageCache.hash(image), () -> timetablePreparer.prepare(image),
+                                             future.getDeadline(), future));
+    }
+
+    /**
+     * Grille d'horaires déjà encodée en JPEG (capture en mémoire): envoyée telle quelle si elle tient
+     * dans le budget, sans passer par un Bitmap.
+     */
+    public AiFuture<String> extractPrayerTimesFromJpegAsync(final byte[] jpeg, Deadline deadline) {
+        return AiFuture.supply(deadline,
+                future -> extractPrayerTimes(PerceptualImageCache.hashJpeg(jpeg), () -> timetablePreparer.prepareJpeg(jpeg),
+                                             future.getDeadline(), future));
+    }
+
+    /** Affiche déjà analysée (même empreinte à quelques bits près): résultat immédiat, sans appel réseau. */
+    private String extractPrayerTimes(PerceptualImageCache.Hash hash, ImageSource image,
+                                      Deadline deadline, AiFuture<?> scope) {
+        String cached = timetableCache.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+        // Réponse lisible + bloc structuré (TimetableParser) pour enregistrer la grille
+        String prompt = TimetableParser.prompt(PRAYER_TIMES_PROMPT, Calendar.getInstance());
+        return analyze(image, prompt, hash, deadline, scope);
     }
 
-    private String extractTextFromResponse(String jsonResponse) {
-        try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-            JSONArray candidates = jsonObject.getJSONArray("candidates");
+    public String getTimetableCacheStats() {
+        return timetableCache.getStats();
+    }
+
+    /** @return texte de la première réponse, ou null si le modèle n'en a renvoyé aucun */
+    private String extractTextFromResponse(String jsonResponse) throws JSONException {
+        JSONObject jsonObject = new JSONObject(jsonResponse);
+        JSONArray candidates = jsonObject.getJSONArray("candidates");
+        
+        if (candidates.length() > 0) {
+            JSONObject candidate = candidates.getJSONObject(0);
+            JSONObject content = candidate.getJSONObject("content");
+            JSONArray parts = content.getJSONArray("parts");
             
-            if (candidates.length() > 0) {
-                JSONObject candidate = candidates.getJSONObject(0);
-                JSONObject content = candidate.getJSONObject("content");
-                JSONArray parts = content.getJSONArray("parts");
-                
-                if (parts.length() > 0) {
-                    JSONObject part = parts.getJSONObject(0);
-                    String text = part.getString("text");
-                    return text.replace("\\n", "\n").trim();
-                }
+            if (parts.length() > 0) {
+                JSONObject part = parts.getJSONObject(0);
+                String text = part.getString("text");
+                return text.replace("\\n", "\n").trim();
             }
-            
-            return "⚠️ No text found in the AI response";
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Extraction error", e);
-            return getDemoPrayerTimes();
         }
+        
+        return null;
     }
 
     private String getDemoPrayerTimes() {
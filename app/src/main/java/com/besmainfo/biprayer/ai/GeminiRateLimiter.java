@@ -0,0 +1,160 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Limiteur partagé par tout le trafic Gemini du processus:
+ * - seau à jetons (débit moyen + rafale courte);
+ * - limite de concurrence AIMD: +1/limite par succès, divisée par deux sur 429 ou surcharge (503);
+ * - Retry-After: plus aucun appel avant l'heure indiquée par le serveur;
+ * - deux files: INTERACTIVE passe toujours avant BACKGROUND, qui laisse un jeton et une place libres.
+ */
+public final class GeminiRateLimiter {
+    private static final String TAG = "GeminiRateLimiter";
+
+    public enum Lane { INTERACTIVE, BACKGROUND }
+
+    public static final int DEFAULT_BUCKET_CAPACITY = 5;
+    public static final double DEFAULT_REFILL_PER_SECOND = 0.5; // 30 requêtes/min en régime établi
+    private static final double INITIAL_LIMIT = 4;
+    private static final double MIN_LIMIT = 1;
+    private static final double MAX_LIMIT = 8;
+    private static final long DEFAULT_BACKOFF_MS = 5000;
+
+    private static final GeminiRateLimiter DEFAULT = new GeminiRateLimiter(DEFAULT_BUCKET_CAPACITY, DEFAULT_REFILL_PER_SECOND);
+
+    private final int capacity;
+    private final double refillPerMs;
+
+    private double tokens;
+    private long lastRefill;
+    private double limit = INITIAL_LIMIT;
+    private int inFlight = 0;
+    private long blockedUntil = 0;
+    private int interactiveWaiting = 0;
+
+    private long grantedInteractive = 0;
+    private long grantedBackground = 0;
+    private long rejected = 0;
+    private long throttled = 0;
+
+    public GeminiRateLimiter(int capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerMs = refillPerSecond / 1000.0;
+        this.tokens = capacity;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    public static GeminiRateLimiter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Attend un jeton et une place de concurrence.
+     * @return le permis, à rendre avec release(), ou null si impossible avant timeoutMs
+     *         (y compris quand le Retry-After du serveur dépasse ce délai: échec immédiat)
+     */
+    public Permit acquire(Lane lane, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            if (lane == Lane.INTERACTIVE) interactiveWaiting++;
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    refill(now);
+                    long remaining = deadline - now;
+                    // Un jeton reste toujours disponible pour l'interactif
+                    double needed = lane == Lane.INTERACTIVE ? 1 : 2;
+
+                    long waitMs;
+                    if (blockedUntil > now) {
+                        if (blockedUntil >= deadline) break;
+                        waitMs = blockedUntil - now;
+                    } else if (!hasSlot(lane)) {
+                        waitMs = remaining; // réveillé par release()
+                    } else if (tokens < needed) {
+                        waitMs = (long) Math.ceil((needed - tokens) / refillPerMs);
+                    } else {
+                        tokens -= 1;
+                        inFlight++;
+                        if (lane == Lane.INTERACTIVE) grantedInteractive++; else grantedBackground++;
+                        return new Permit();
+                    }
+
+                    if (remaining <= 0) break;
+                    wait(Math.max(1, Math.min(waitMs, remaining)));
+                }
+                rejected++;
+                return null;
+            } finally {
+                if (lane == Lane.INTERACTIVE) interactiveWaiting--;
+            }
+        }
+    }
+
+    private boolean hasSlot(Lane lane) {
+        int slots = (int) limit;
+        if (lane == Lane.INTERACTIVE) return inFlight < slots;
+        return interactiveWaiting == 0 && inFlight < Math.max(1, slots - 1);
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMs);
+            lastRefill = now;
+        }
+    }
+
+    private synchronized void onRelease(GeminiResult result, boolean refund) {
+        inFlight--;
+        if (refund) {
+            tokens = Math.min(capacity, tokens + 1);
+        } else if (result != null) {
+            if (result.isSuccess()) {
+                limit = Math.min(MAX_LIMIT, limit + 1.0 / limit);
+            } else if (result.error == GeminiResult.ErrorKind.QUOTA) {
+                throttled++;
+                limit = Math.max(MIN_LIMIT, limit / 2);
+                long backoff = result.retryAfterMs > 0 ? result.retryAfterMs : DEFAULT_BACKOFF_MS;
+                blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + backoff);
+                tokens = 0;
+                Log.w(TAG, "🚦 429 reçu: limite " + String.format(Locale.US, "%.1f", limit) + ", pause " + backoff + " ms");
+            } else if (result.httpCode == 503) {
+                limit = Math.max(MIN_LIMIT, limit / 2);
+            }
+        }
+        notifyAll();
+    }
+
+    /** Place de concurrence obtenue; release() une seule fois, avec le résultat de l'appel. */
+    public final class Permit {
+        private boolean released = false;
+
+        /** @param result résultat de l'appel (null: annulé, sans effet sur la limite) */
+        public void release(GeminiResult result) {
+            if (markReleased()) onRelease(result, false);
+        }
+
+        /** Appel abandonné avant l'envoi: le jeton est rendu. */
+        public void abandon() {
+            if (markReleased()) onRelease(null, true);
+        }
+
+        private synchronized boolean markReleased() {
+            if (released) return false;
+            released = true;
+            return true;
+        }
+    }
+
+    public synchronized String getStats() {
+        refill(System.currentTimeMillis());
+        long blockedFor = Math.max(0, blockedUntil - System.currentTimeMillis());
+        return String.format(Locale.US,
+                "Limiteur Gemini: limite %.1f, en cours %d, jetons %.1f/%d, %d interactifs, %d arrière-plan, %d refusés, %d 429%s",
+                limit, inFlight, tokens, capacity, grantedInteractive, grantedBackground, rejected, throttled,
+                blockedFor > 0 ? ", pause " + blockedFor + " ms" : "");
+    }
+}
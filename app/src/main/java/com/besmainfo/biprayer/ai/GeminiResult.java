@@ -0,0 +1,98 @@
+package com.besmainfo.biprayer.ai;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Résultat typé d'un appel Gemini: texte en cas de succès, sinon une catégorie d'erreur
+ * qui décide si un autre modèle peut être essayé.
+ */
+public final class GeminiResult {
+
+    public enum ErrorKind {
+        /** Clé absente, invalide ou refusée (400 API_KEY_INVALID, 401, 403) */
+        AUTH(false),
+        /** Quota ou débit dépassé (429): les autres modèles partagent la même clé */
+        QUOTA(false),
+        /** Modèle inconnu ou non disponible pour generateContent (404) */
+        MODEL_NOT_FOUND(true),
+        /** Erreur serveur, modèle surchargé (5xx) ou trop lent (délai de lecture dépassé) */
+        TRANSIENT(true),
+        /** Pas de réseau, DNS, connexion refusée, trop lente ou annulée */
+        NETWORK(false),
+        /** Requête rejetée ou réponse inexploitable (autres 4xx, contenu bloqué) */
+        BAD_REQUEST(false);
+
+        /** true si l'échec est propre au modèle: le suivant peut réussir */
+        public final boolean tryNextModel;
+
+        ErrorKind(boolean tryNextModel) {
+            this.tryNextModel = tryNextModel;
+        }
+    }
+
+    public final String model;
+    public final String text;
+    public final ErrorKind error;
+    public final int httpCode;
+    public final String message;
+    /** Délai demandé par le serveur (Retry-After), -1 si absent */
+    public final long retryAfterMs;
+
+    private GeminiResult(String model, String text, ErrorKind error, int httpCode, String message, long retryAfterMs) {
+        this.model = model;
+        this.text = text;
+        this.error = error;
+        this.httpCode = httpCode;
+        this.message = message;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public static GeminiResult success(String model, String text) {
+        return new GeminiResult(model, text, null, 200, null, -1);
+    }
+
+    public static GeminiResult failure(String model, ErrorKind error, int httpCode, String message, long retryAfterMs) {
+        return new GeminiResult(model, null, error, httpCode, message, retryAfterMs);
+    }
+
+    /**
+     * Un délai de lecture dépassé sur une connexion établie est imputé au modèle (lent ou surchargé);
+     * délai de connexion, attente d'une connexion libre et autres erreurs d'E/S au réseau.
+     */
+    public static GeminiResult failure(String model, IOException e) {
+        boolean readTimeout = e instanceof SocketTimeoutException
+                && !(e instanceof HttpTransport.ConnectTimeoutException);
+        ErrorKind kind = readTimeout ? ErrorKind.TRANSIENT : ErrorKind.NETWORK;
+        return new GeminiResult(model, null, kind, -1, e.getClass().getSimpleName() + ": " + e.getMessage(), -1);
+    }
+
+    /**
+     * Classe une réponse HTTP d'erreur à partir du code et du message renvoyé par l'API
+     * (Gemini renvoie 400 pour une clé invalide et parfois pour un modèle non supporté).
+     */
+    public static ErrorKind classify(int httpCode, String message) {
+        String lower = message != null ? message.toLowerCase() : "";
+        if (httpCode == 401 || httpCode == 403
+                || lower.contains("api key not valid") || lower.contains("api_key_invalid")) {
+            return ErrorKind.AUTH;
+        }
+        if (httpCode == 429) return ErrorKind.QUOTA;
+        if (httpCode == 404 || (httpCode == 400 && (lower.contains("is not found") || lower.contains("not supported")))) {
+            return ErrorKind.MODEL_NOT_FOUND;
+        }
+        if (httpCode == 408 || httpCode >= 500) return ErrorKind.TRANSIENT;
+        return ErrorKind.BAD_REQUEST;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? "✅ " + model
+                : "❌ " + error + " (" + (httpCode > 0 ? "HTTP " + httpCode + ", " : "") + model + "): " + message;
+    }
+}
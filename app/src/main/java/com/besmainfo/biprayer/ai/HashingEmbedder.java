@@ -0,0 +1,127 @@
+package com.besmainfo.biprayer.ai;
+
+import com.besmainfo.biprayer.utils.TextNormalizer;
+
+import java.util.Arrays;
+
+/**
+ * Embeddings locaux déterministes par hachage de caractéristiques (feature hashing):
+ * mots, paires de mots consécutifs et n-grammes de caractères (3 et 4) de chaque mot.
+ *
+ * Le texte passe par TextNormalizer (accents, harakat, variantes de lettres arabes), donc
+ * "prière"/"priere" ou "الصَّلَاة"/"الصلاة" donnent le même vecteur. Les n-grammes rapprochent
+ * les formes fléchies (patience/patients, الصبر/والصبر). Chaque caractéristique ajoute ±poids
+ * à une dimension choisie par hachage; le vecteur final est normalisé (norme L2 = 1).
+ */
+public class HashingEmbedder {
+    public static final int DEFAULT_DIMENSION = 384;
+
+    private static final int WORD_SEED = 0x2F0B3A49;
+    private static final int BIGRAM_SEED = 0x61C88647;
+    private static final int NGRAM_SEED = 0x1B873593;
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.5f;
+    private static final float NGRAM_WEIGHT = 0.35f;
+    private static final int MIN_NGRAM = 3;
+    private static final int MAX_NGRAM = 4;
+    private static final char WORD_BOUNDARY = '\u0002';
+
+    private final int dimension;
+
+    public HashingEmbedder() {
+        this(DEFAULT_DIMENSION);
+    }
+
+    public HashingEmbedder(int dimension) {
+        this.dimension = dimension;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public float[] embed(String text) {
+        return embed(text, new float[dimension]);
+    }
+
+    /**
+     * Écrit l'embedding dans `out` (réutilisable d'un appel à l'autre) et le retourne.
+     * Un texte sans mot exploitable donne le vecteur nul.
+     */
+    public float[] embed(String text, float[] out) {
+        if (out.length != dimension) {
+            throw new IllegalArgumentException("Dimension " + out.length + " au lieu de " + dimension);
+        }
+        Arrays.fill(out, 0f);
+
+        String normalized = TextNormalizer.normalize(text);
+        int length = normalized.length();
+        int previousWord = 0;
+        boolean hasPrevious = false;
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(normalized.charAt(i))) i++;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(normalized.charAt(i))) i++;
+            if (i - start < TextNormalizer.MIN_TOKEN_LENGTH) continue;
+
+            int word = hash(normalized, start, i, WORD_SEED);
+            addFeature(out, word, WORD_WEIGHT);
+            if (hasPrevious) {
+                addFeature(out, mix(previousWord * 31 + word ^ BIGRAM_SEED), BIGRAM_WEIGHT);
+            }
+            previousWord = word;
+            hasPrevious = true;
+
+            addCharNgrams(out, normalized, start, i);
+        }
+
+        HnswIndex.normalize(out, 0, dimension);
+        return out;
+    }
+
+    /**
+     * n-grammes du mot entouré de marqueurs de début/fin ("<pa", "pat", ..., "ce>").
+     */
+    private void addCharNgrams(float[] out, String text, int start, int end) {
+        for (int n = MIN_NGRAM; n <= MAX_NGRAM; n++) {
+            for (int from = start - 1; from + n <= end + 1; from++) {
+                int h = NGRAM_SEED + n;
+                for (int p = from; p < from + n; p++) {
+                    char c = p < start || p >= end ? WORD_BOUNDARY : text.charAt(p);
+                    h = (h ^ c) * 0x01000193;
+                }
+                addFeature(out, mix(h), NGRAM_WEIGHT);
+            }
+        }
+    }
+
+    /**
+     * Dimension = bits de poids faible, signe = bit de poids fort (limite le biais des collisions).
+     */
+    private void addFeature(float[] out, int hash, float weight) {
+        int index = (hash & 0x7FFFFFFF) % dimension;
+        out[index] += hash < 0 ? -weight : weight;
+    }
+
+    private static int hash(String text, int start, int end, int seed) {
+        int h = seed;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finaliseur de MurmurHash3 (fmix32): répartit les bits du FNV-1a.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,523 @@
+package com.besmainfo.biprayer.ai;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index HNSW (Hierarchical Navigable Small World) en mémoire, similarité cosinus.
+ * Les vecteurs sont normalisés à l'insertion: le score retourné est un cosinus dans [-1, 1],
+ * comparable aux scores d'une collection Qdrant "Cosine".
+ */
+public class HnswIndex {
+
+    /**
+     * m: voisins par nœud (2*m au niveau 0), efConstruction: largeur de recherche à l'insertion,
+     * efSearch: largeur de recherche par défaut (compromis rappel / latence).
+     */
+    public static class Config {
+        public final int m;
+        public final int efConstruction;
+        public final int efSearch;
+        public final long seed;
+
+        public Config(int m, int efConstruction, int efSearch) {
+            this(m, efConstruction, efSearch, 42L);
+        }
+
+        public Config(int m, int efConstruction, int efSearch, long seed) {
+            if (m < 2 || efConstruction < 1 || efSearch < 1) {
+                throw new IllegalArgumentException("Paramètres HNSW invalides");
+            }
+            this.m = m;
+            this.efConstruction = efConstruction;
+            this.efSearch = efSearch;
+            this.seed = seed;
+        }
+
+        public Config withEfSearch(int efSearch) {
+            return new Config(m, efConstruction, efSearch, seed);
+        }
+    }
+
+    public static final Config DEFAULT_CONFIG = new Config(16, 100, 64);
+
+    /**
+     * Résultats triés par score décroissant.
+     */
+    public static class Hits {
+        public final int[] ids;
+        public final float[] scores;
+
+        Hits(int[] ids, float[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+
+        public int size() { return ids.length; }
+    }
+
+    private final int dimension;
+    private final Config config;
+    private final int maxLinks;
+    private final int maxLinksLevel0;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedSet> visited = new ThreadLocal<VisitedSet>() {
+        @Override
+        protected VisitedSet initialValue() {
+            return new VisitedSet();
+        }
+    };
+
+    private float[] vectors;
+    // links[nœud][niveau] = {nombre, voisin1, voisin2, ...}
+    private int[][][] links;
+    private int size = 0;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension) {
+        this(dimension, DEFAULT_CONFIG);
+    }
+
+    public HnswIndex(int dimension, Config config) {
+        this.dimension = dimension;
+        this.config = config;
+        this.maxLinks = config.m;
+        this.maxLinksLevel0 = config.m * 2;
+        this.levelMultiplier = 1.0 / Math.log(config.m);
+        this.random = new Random(config.seed);
+        this.vectors = new float[dimension * 64];
+        this.links = new int[64][][];
+    }
+
+    public int getDimension() { return dimension; }
+    public Config getConfig() { return config; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute un vecteur (copié puis normalisé) et retourne son identifiant séquentiel.
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Dimension " + vector.length + " au lieu de " + dimension);
+        }
+
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            ensureCapacity(node + 1);
+            System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+            normalize(vectors, node * dimension, dimension);
+
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[1 + (l == 0 ? maxLinksLevel0 : maxLinks)];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vectors, node * dimension, current, l);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                ScoreHeap candidates = searchLayer(vectors, node * dimension, current, config.efConstruction, l);
+                int[] sorted = candidates.drainDescending();
+                int limit = l == 0 ? maxLinksLevel0 : maxLinks;
+
+                int[] selected = selectNeighbors(node, sorted, Math.min(limit, config.m));
+                int[] own = links[node][l];
+                own[0] = selected.length;
+                System.arraycopy(selected, 0, own, 1, selected.length);
+
+                for (int neighbor : selected) {
+                    connect(neighbor, node, l, limit);
+                }
+                current = sorted[0];
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Hits search(float[] query, int k) {
+        return search(query, k, config.efSearch);
+    }
+
+    /**
+     * Recherche approximative des k plus proches voisins avec une largeur ef (>= k conseillé).
+     */
+    public Hits search(float[] query, int k, int ef) {
+        float[] q = Arrays.copyOf(query, dimension);
+        normalize(q, 0, dimension);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) return new Hits(new int[0], new float[0]);
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(q, 0, current, l);
+            }
+            ScoreHeap results = searchLayer(q, 0, current, Math.max(ef, k), 0);
+            while (results.size() > k) results.pop();
+            return results.toHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recherche exacte (force brute): référence pour mesurer le rappel.
+     */
+    public Hits exactSearch(float[] query, int k) {
+        float[] q = Arrays.copyOf(query, dimension);
+        normalize(q, 0, dimension);
+
+        lock.readLock().lock();
+        try {
+            ScoreHeap results = new ScoreHeap(false, k + 1);
+            for (int node = 0; node < size; node++) {
+                float score = dot(q, 0, vectors, node * dimension, dimension);
+                if (results.size() < k || score > results.peekScore()) {
+                    results.push(node, score);
+                    if (results.size() > k) results.pop();
+                }
+            }
+            return results.toHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copie du vecteur normalisé stocké pour un identifiant.
+     */
+    public float[] getVector(int id) {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOfRange(vectors, id * dimension, (id + 1) * dimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============================================================
+    //  ALGORITHME
+    // ============================================================
+
+    private int greedyClosest(float[] query, int queryOffset, int start, int level) {
+        int current = start;
+        float best = dot(query, queryOffset, vectors, current * dimension, dimension);
+        boolean improved = true;
+
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int candidate = neighbors[i];
+                float score = dot(query, queryOffset, vectors, candidate * dimension, dimension);
+                if (score > best) {
+                    best = score;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Retourne un tas-min (pire résultat au sommet) des ef meilleurs nœuds du niveau.
+     */
+    private ScoreHeap searchLayer(float[] query, int queryOffset, int start, int ef, int level) {
+        VisitedSet seen = visited.get();
+        seen.reset(size);
+
+        ScoreHeap candidates = new ScoreHeap(true, ef * 2);
+        ScoreHeap results = new ScoreHeap(false, ef + 1);
+
+        float startScore = dot(query, queryOffset, vectors, start * dimension, dimension);
+        seen.mark(start);
+        candidates.push(start, startScore);
+        results.push(start, startScore);
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.peekScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.peekScore()) break;
+
+            if (level >= links[candidate].length) continue;
+            int[] neighbors = links[candidate][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!seen.mark(neighbor)) continue;
+
+                float score = dot(query, queryOffset, vectors, neighbor * dimension, dimension);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(neighbor, score);
+                    results.push(neighbor, score);
+                    if (results.size() > ef) results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Heuristique de sélection: un candidat n'est gardé que s'il est plus proche du nœud
+     * que de tous les voisins déjà retenus (favorise la diversité des directions).
+     * Les candidats écartés complètent la liste si elle reste incomplète.
+     */
+    private int[] selectNeighbors(int node, int[] candidatesDescending, int limit) {
+        int[] selected = new int[Math.min(limit, candidatesDescending.length)];
+        boolean[] taken = new boolean[candidatesDescending.length];
+        int count = 0;
+
+        for (int i = 0; i < candidatesDescending.length && count < selected.length; i++) {
+            int candidate = candidatesDescending[i];
+            if (candidate == node) {
+                taken[i] = true;
+                continue;
+            }
+            float toNode = dot(vectors, node * dimension, vectors, candidate * dimension, dimension);
+            boolean keep = true;
+            for (int j = 0; j < count; j++) {
+                if (dot(vectors, candidate * dimension, vectors, selected[j] * dimension, dimension) > toNode) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+                taken[i] = true;
+            }
+        }
+
+        for (int i = 0; i < candidatesDescending.length && count < selected.length; i++) {
+            if (!taken[i] && candidatesDescending[i] != node) {
+                selected[count++] = candidatesDescending[i];
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void connect(int from, int to, int level, int limit) {
+        int[] list = links[from][level];
+        if (list[0] < limit) {
+            list[++list[0]] = to;
+            return;
+        }
+
+        // Liste pleine: re-sélection parmi les voisins existants + le nouveau
+        int[] candidates = new int[list[0] + 1];
+        float[] scores = new float[candidates.length];
+        for (int i = 0; i < list[0]; i++) {
+            candidates[i] = list[i + 1];
+        }
+        candidates[list[0]] = to;
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] = dot(vectors, from * dimension, vectors, candidates[i] * dimension, dimension);
+        }
+        sortDescending(candidates, scores);
+
+        int[] kept = selectNeighbors(from, candidates, limit);
+        list[0] = kept.length;
+        System.arraycopy(kept, 0, list, 1, kept.length);
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes * dimension > vectors.length) {
+            vectors = Arrays.copyOf(vectors, Math.max(nodes, links.length * 2) * dimension);
+        }
+        if (nodes > links.length) {
+            links = Arrays.copyOf(links, Math.max(nodes, links.length * 2));
+        }
+    }
+
+    /**
+     * Produit scalaire déroulé sur 4 accumulateurs (le JIT ne peut pas réordonner une somme flottante).
+     */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static void normalize(float[] v, int offset, int length) {
+        float norm = (float) Math.sqrt(dot(v, offset, v, offset, length));
+        if (norm == 0f) return;
+        for (int i = 0; i < length; i++) {
+            v[offset + i] /= norm;
+        }
+    }
+
+    private static void sortDescending(int[] ids, float[] scores) {
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                ids[j + 1] = ids[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            scores[j + 1] = score;
+        }
+    }
+
+    // ============================================================
+    //  STRUCTURES PRIMITIVES (sans boxing)
+    // ============================================================
+
+    /**
+     * Tas binaire de (id, score): max-tas si max, sinon min-tas.
+     */
+    static final class ScoreHeap {
+        private final boolean max;
+        private int[] ids;
+        private float[] scores;
+        private int size = 0;
+
+        ScoreHeap(boolean max, int capacity) {
+            this.max = max;
+            this.ids = new int[Math.max(capacity, 4)];
+            this.scores = new float[ids.length];
+        }
+
+        int size() { return size; }
+        float peekScore() { return scores[0]; }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            size--;
+            if (size > 0) {
+                int id = ids[size];
+                float score = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && before(scores[child + 1], scores[child])) child++;
+                    if (!before(scores[child], score)) break;
+                    ids[i] = ids[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                ids[i] = id;
+                scores[i] = score;
+            }
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+
+        /**
+         * Vide un min-tas en tableau d'identifiants trié par score décroissant.
+         */
+        int[] drainDescending() {
+            int[] out = new int[size];
+            for (int i = out.length - 1; i >= 0; i--) {
+                out[i] = pop();
+            }
+            return out;
+        }
+
+        Hits toHits() {
+            int[] outIds = new int[size];
+            float[] outScores = new float[size];
+            for (int i = outIds.length - 1; i >= 0; i--) {
+                outScores[i] = scores[0];
+                outIds[i] = pop();
+            }
+            return new Hits(outIds, outScores);
+        }
+    }
+
+    /**
+     * Ensemble de nœuds visités réutilisé entre recherches (marquage par génération).
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation = 0;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * Retourne false si le nœud était déjà marqué.
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) return false;
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
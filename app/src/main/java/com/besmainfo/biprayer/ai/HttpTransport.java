@@ -0,0 +1,596 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Transport HTTP partagé par les clients Gemini, Qdrant et Opus.
+ *
+ * - Connexions persistantes (keep-alive) réutilisées entre appels: plus de TCP + TLS à chaque requête.
+ * - Limite de requêtes simultanées par hôte (sémaphore), en plus du pool de connexions.
+ * - Backend interchangeable: OkHttp par défaut, HttpURLConnection en secours.
+ * - Redirection d'origine (ex. Gemini -> serveur local de test) sans toucher aux clients.
+ * - Chaque réponse porte son minutage: DNS, connexion, TLS, premier octet.
+ */
+public final class HttpTransport {
+    private static final String TAG = "HttpTransport";
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+    private static volatile HttpTransport defaultInstance;
+
+    private volatile Backend backend;
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+    private final Map<String, String> originOverrides = new ConcurrentHashMap<>();
+
+    public HttpTransport(Backend backend, int maxRequestsPerHost) {
+        this.backend = backend;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Instance commune à toute l'application (un seul pool de connexions).
+     */
+    public static HttpTransport getDefault() {
+        if (defaultInstance == null) {
+            synchronized (HttpTransport.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new HttpTransport(new OkHttpBackend(), DEFAULT_MAX_REQUESTS_PER_HOST);
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Redirige toutes les URL commençant par `origin` vers `replacement`
+     * (ex. "https://generativelanguage.googleapis.com" -> "http://127.0.0.1:8089").
+     */
+    public void overrideOrigin(String origin, String replacement) {
+        originOverrides.put(origin, replacement);
+    }
+
+    public void clearOriginOverrides() {
+        originOverrides.clear();
+    }
+
+    public Call newCall(Request request) {
+        return new Call(this, request);
+    }
+
+    public Response execute(Request request) throws IOException {
+        return newCall(request).execute();
+    }
+
+    /**
+     * Appel rattaché à une tâche asynchrone: si elle est annulée ou dépasse son échéance,
+     * la connexion est coupée aussitôt (scope null: appel simple).
+     */
+    public Response execute(Request request, AiFuture<?> scope) throws IOException {
+        Call call = newCall(request);
+        if (scope != null) scope.onCancel(call::cancel);
+        return call.execute();
+    }
+
+    String resolve(String url) {
+        for (Map.Entry<String, String> entry : originOverrides.entrySet()) {
+            if (url.startsWith(entry.getKey())) {
+                return entry.getValue() + url.substring(entry.getKey().length());
+            }
+        }
+        return url;
+    }
+
+    Semaphore limitFor(String host) {
+        Semaphore limit = hostLimits.get(host);
+        if (limit == null) {
+            Semaphore created = new Semaphore(maxRequestsPerHost, true);
+            limit = hostLimits.putIfAbsent(host, created);
+            if (limit == null) limit = created;
+        }
+        return limit;
+    }
+
+    // ============================================================
+    //  REQUÊTE / RÉPONSE
+    // ============================================================
+
+    /**
+     * Écrit le corps directement dans le flux de la connexion (pas de copie intermédiaire).
+     */
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public static final class Request {
+        final String method;
+        final String url;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        BodyWriter body;
+        long contentLength = -1;
+        int connectTimeoutMs = 15000;
+        int readTimeoutMs = 15000;
+
+        public Request(String method, String url) {
+            this.method = method;
+            this.url = url;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request timeouts(int connectTimeoutMs, int readTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /** Corps en flux, longueur inconnue (transfert "chunked"). */
+        public Request body(BodyWriter body) {
+            this.body = body;
+            this.contentLength = -1;
+            return this;
+        }
+
+        public Request body(String text) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.body = new BodyWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(bytes);
+                }
+            };
+            this.contentLength = bytes.length;
+            return this;
+        }
+
+        public String getUrl() { return url; }
+    }
+
+    /**
+     * Réponse dont le corps se lit en flux; close() rend la connexion au pool.
+     */
+    public static final class Response implements Closeable {
+        public final int code;
+        public final Timing timing;
+        private final InputStream body;
+        private final Map<String, String> headers;
+        private Runnable onClose;
+
+        public Response(int code, InputStream body, Map<String, String> headers, Timing timing) {
+            this.code = code;
+            this.body = body;
+            this.headers = headers;
+            this.timing = timing;
+        }
+
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+
+        /** Corps brut (peut être vide, jamais null). */
+        public InputStream body() {
+            return body;
+        }
+
+        public String bodyString() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        synchronized void onClose(Runnable action) {
+            this.onClose = action;
+        }
+
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+            }
+            Runnable action;
+            synchronized (this) {
+                action = onClose;
+                onClose = null;
+            }
+            if (action != null) action.run();
+        }
+    }
+
+    /**
+     * Aucune connexion obtenue à temps (place libre vers l'hôte, TCP ou TLS): problème de réseau,
+     * pas de lenteur du serveur. Un délai de lecture sur une connexion établie reste un
+     * SocketTimeoutException ordinaire.
+     */
+    public static final class ConnectTimeoutException extends SocketTimeoutException {
+        public ConnectTimeoutException(String message) {
+            super(message);
+        }
+
+        static ConnectTimeoutException wrap(String host, SocketTimeoutException cause) {
+            ConnectTimeoutException e = new ConnectTimeoutException("Connexion à " + host + " impossible: " + cause.getMessage());
+            e.initCause(cause);
+            return e;
+        }
+    }
+
+    /**
+     * Minutage d'une requête en ms (-1 = non mesuré ou connexion réutilisée).
+     */
+    public static final class Timing {
+        public final long dnsMs;
+        public final long connectMs;
+        public final long tlsMs;
+        public final long firstByteMs;
+        public final boolean connectionReused;
+
+        public Timing(long dnsMs, long connectMs, long tlsMs, long firstByteMs, boolean connectionReused) {
+            this.dnsMs = dnsMs;
+            this.connectMs = connectMs;
+            this.tlsMs = tlsMs;
+            this.firstByteMs = firstByteMs;
+            this.connectionReused = connectionReused;
+        }
+
+        @Override
+        public String toString() {
+            if (connectionReused) {
+                return "connexion réutilisée, premier octet " + firstByteMs + " ms";
+            }
+            return "dns " + dnsMs + " ms, connexion " + connectMs + " ms, tls " + tlsMs +
+                   " ms, premier octet " + firstByteMs + " ms";
+        }
+    }
+
+    /**
+     * Appel annulable: cancel() depuis un autre thread interrompt la connexion en cours.
+     */
+    public static final class Call {
+        /** Période de vérification de cancel() pendant l'attente d'une connexion libre */
+        private static final long ACQUIRE_POLL_MS = 100;
+
+        private final HttpTransport transport;
+        private final Request request;
+        private volatile boolean canceled = false;
+        private Runnable canceler;
+
+        Call(HttpTransport transport, Request request) {
+            this.transport = transport;
+            this.request = request;
+        }
+
+        public Response execute() throws IOException {
+            String url = transport.resolve(request.url);
+            String host = new URL(url).getHost();
+            Semaphore limit = transport.limitFor(host);
+            acquire(limit, host);
+
+            final Semaphore release = limit;
+            try {
+                if (canceled) throw new IOException("Appel annulé");
+                Response response = transport.backend.execute(url, request, this);
+                response.onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        release.release();
+                    }
+                });
+                Log.d(TAG, "⏱️ " + request.method + " " + host + " -> " + response.code + " (" + response.timing + ")");
+                return response;
+            } catch (IOException | RuntimeException e) {
+                limit.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Attente d'une place parmi les connexions de l'hôte, bornée par le délai de connexion
+         * et interrompue par cancel() (vérifié entre deux tranches d'attente).
+         */
+        private void acquire(Semaphore limit, String host) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.connectTimeoutMs);
+            try {
+                while (true) {
+                    if (canceled) throw new IOException("Appel annulé");
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMs <= 0) {
+                        throw new ConnectTimeoutException("Aucune connexion libre vers " + host +
+                                                         " après " + request.connectTimeoutMs + " ms");
+                    }
+                    if (limit.tryAcquire(Math.min(remainingMs, ACQUIRE_POLL_MS), TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Attente de connexion interrompue");
+            }
+        }
+
+        public void cancel() {
+            Runnable action;
+            synchronized (this) {
+                canceled = true;
+                action = canceler;
+            }
+            if (action != null) action.run();
+        }
+
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        /** Enregistré par le backend: action qui coupe la connexion. */
+        void setCanceler(Runnable canceler) {
+            boolean runNow;
+            synchronized (this) {
+                this.canceler = canceler;
+                runNow = canceled;
+            }
+            if (runNow) canceler.run();
+        }
+    }
+
+    // ============================================================
+    //  BACKENDS
+    // ============================================================
+
+    public interface Backend {
+        Response execute(String url, Request request, Call call) throws IOException;
+    }
+
+    /**
+     * OkHttp: pool de connexions partagé, HTTP/2 si disponible, minutage via EventListener.
+     */
+    public static final class OkHttpBackend implements Backend {
+        private final OkHttpClient client;
+
+        public OkHttpBackend() {
+            this(new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+                    .retryOnConnectionFailure(true)
+                    .build());
+        }
+
+        public OkHttpBackend(OkHttpClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public Response execute(String url, final Request request, Call call) throws IOException {
+            TimingListener timing = new TimingListener();
+            OkHttpClient perCall = client.newBuilder()
+                    .connectTimeout(request.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                    .readTimeout(request.readTimeoutMs, TimeUnit.MILLISECONDS)
+                    .writeTimeout(request.readTimeoutMs, TimeUnit.MILLISECONDS)
+                    .eventListener(timing)
+                    .build();
+
+            RequestBody body = null;
+            if (request.body != null) {
+                body = new RequestBody() {
+                    @Override
+                    public MediaType contentType() {
+                        return null; // En-tête Content-Type fourni par la requête
+                    }
+
+                    @Override
+                    public long contentLength() {
+                        return request.contentLength;
+                    }
+
+                    @Override
+                    public void writeTo(BufferedSink sink) throws IOException {
+                        request.body.writeTo(sink.outputStream());
+                    }
+                };
+            } else if (!"GET".equals(request.method)) {
+                body = RequestBody.create(new byte[0], (MediaType) null);
+            }
+
+            okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(url).method(request.method, body);
+            for (Map.Entry<String, String> header : request.headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+
+            final okhttp3.Call okCall = perCall.newCall(builder.build());
+            call.setCanceler(new Runnable() {
+                @Override
+                public void run() {
+                    okCall.cancel();
+                }
+            });
+
+            okhttp3.Response okResponse;
+            try {
+                okResponse = okCall.execute();
+            } catch (SocketTimeoutException e) {
+                if (timing.connected) throw e;
+                throw ConnectTimeoutException.wrap(new URL(url).getHost(), e);
+            }
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String name : okResponse.headers().names()) {
+                headers.put(name.toLowerCase(Locale.ROOT), okResponse.header(name));
+            }
+            InputStream stream = okResponse.body() != null ? okResponse.body().byteStream() : new ByteArrayInputStream(new byte[0]);
+            return new Response(okResponse.code(), stream, headers, timing.snapshot());
+        }
+    }
+
+    /**
+     * Horodatage des étapes OkHttp d'un appel.
+     */
+    private static final class TimingListener extends EventListener {
+        private long callStart, dnsStart = -1, dnsEnd = -1, connectStart = -1, connectEnd = -1,
+                secureStart = -1, secureEnd = -1, firstByte = -1;
+        /** Connexion obtenue (nouvelle ou réutilisée): un délai dépassé ensuite est un délai de lecture */
+        volatile boolean connected;
+
+        @Override
+        public void callStart(okhttp3.Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(okhttp3.Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(okhttp3.Call call, String domainName, List<InetAddress> addresses) {
+            dnsEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(okhttp3.Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(okhttp3.Call call) {
+            secureStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(okhttp3.Call call, Handshake handshake) {
+            secureEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(okhttp3.Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            connectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectionAcquired(okhttp3.Call call, Connection connection) {
+            connected = true;
+            if (connectEnd < 0) connectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(okhttp3.Call call) {
+            firstByte = System.nanoTime();
+        }
+
+        synchronized Timing snapshot() {
+            boolean reused = connectStart < 0;
+            return new Timing(millis(dnsStart, dnsEnd), millis(connectStart, connectEnd),
+                              millis(secureStart, secureEnd), millis(callStart, firstByte), reused);
+        }
+
+        private static long millis(long start, long end) {
+            return start >= 0 && end >= start ? (end - start) / 1_000_000 : -1;
+        }
+    }
+
+    /**
+     * HttpURLConnection: keep-alive du système tant que le flux est lu puis fermé
+     * (jamais disconnect() hors annulation). Seul le premier octet est mesuré.
+     */
+    public static final class UrlConnectionBackend implements Backend {
+        @Override
+        public Response execute(String url, Request request, Call call) throws IOException {
+            long start = System.nanoTime();
+            final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            call.setCanceler(new Runnable() {
+                @Override
+                public void run() {
+                    conn.disconnect();
+                }
+            });
+
+            conn.setRequestMethod(request.method);
+            conn.setConnectTimeout(request.connectTimeoutMs);
+            conn.setReadTimeout(request.readTimeoutMs);
+            for (Map.Entry<String, String> header : request.headers.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            if (request.body != null) {
+                conn.setDoOutput(true);
+                if (request.contentLength >= 0) {
+                    conn.setFixedLengthStreamingMode(request.contentLength);
+                } else {
+                    conn.setChunkedStreamingMode(0);
+                }
+            }
+
+            // Connexion explicite: seul un délai dépassé ici est un délai de connexion
+            try {
+                conn.connect();
+            } catch (SocketTimeoutException e) {
+                throw ConnectTimeoutException.wrap(conn.getURL().getHost(), e);
+            }
+
+            if (request.body != null) {
+                try (OutputStream out = conn.getOutputStream()) {
+                    request.body.writeTo(out);
+                }
+            }
+
+            int code = conn.getResponseCode();
+            long firstByte = (System.nanoTime() - start) / 1_000_000;
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+                if (header.getKey() != null && !header.getValue().isEmpty()) {
+                    headers.put(header.getKey().toLowerCase(Locale.ROOT), header.getValue().get(0));
+                }
+            }
+
+            InputStream stream = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            if (stream == null) stream = new ByteArrayInputStream(new byte[0]);
+            return new Response(code, stream, headers, new Timing(-1, -1, -1, firstByte, false));
+        }
+    }
+}
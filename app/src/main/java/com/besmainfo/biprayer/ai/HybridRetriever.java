@@ -0,0 +1,201 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+import com.besmainfo.biprayer.services.QuranService.QuranVerse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recherche hybride: les sources (lexicales, vectorielle...) tournent en parallèle dans un même budget,
+ * puis leurs classements sont fusionnés par Reciprocal Rank Fusion:
+ * score(verset) = somme sur les sources de poids / (k + rang), rang à partir de 1.
+ * Les versets sont dédoublonnés par référence; une source hors budget est simplement ignorée.
+ */
+public final class HybridRetriever {
+    private static final String TAG = "HybridRetriever";
+    public static final int DEFAULT_RRF_K = 60;
+
+    /** Une source de résultats classés, le plus pertinent en premier. */
+    public interface Retriever {
+        List<QuranVerse> retrieve(String query, AiFuture<?> scope) throws Exception;
+    }
+
+    private static final class Source {
+        final String name;
+        final double weight;
+        final Retriever retriever;
+
+        Source(String name, double weight, Retriever retriever) {
+            this.name = name;
+            this.weight = weight;
+            this.retriever = retriever;
+        }
+    }
+
+    private final int rrfK;
+    private final List<Source> sources = new ArrayList<>();
+
+    public HybridRetriever() {
+        this(DEFAULT_RRF_K);
+    }
+
+    public HybridRetriever(int rrfK) {
+        this.rrfK = rrfK;
+    }
+
+    public HybridRetriever add(String name, Retriever retriever) {
+        return add(name, 1.0, retriever);
+    }
+
+    public HybridRetriever add(String name, double weight, Retriever retriever) {
+        sources.add(new Source(name, weight, retriever));
+        return this;
+    }
+
+    /**
+     * Lance toutes les sources et attend au plus jusqu'à l'échéance; bloquant.
+     * @param offset position du premier résultat de la page (0 = meilleur)
+     */
+    public Page search(String query, int offset, int limit, Deadline deadline) {
+        return collect(query, offset, limit, deadline, null);
+    }
+
+    /** Version asynchrone de search: cancel() annule aussi les sources encore en cours. */
+    public AiFuture<Page> searchAsync(final String query, final int offset, final int limit, final Deadline deadline) {
+        // Pas d'échéance propre: n'attend que les sources, elles-mêmes bornées par la leur
+        return AiFuture.supply(Deadline.none(), future -> collect(query, offset, limit, deadline, future));
+    }
+
+    private Page collect(String query, int offset, int limit, Deadline deadline, AiFuture<?> scope) {
+        long start = System.currentTimeMillis();
+        List<AiFuture<List<QuranVerse>>> running = new ArrayList<>(sources.size());
+        for (final Source source : sources) {
+            AiFuture<List<QuranVerse>> future = AiFuture.supply(deadline,
+                    self -> source.retriever.retrieve(query, self));
+            if (scope != null) scope.onCancel(future::cancel);
+            running.add(future);
+        }
+
+        Map<String, List<QuranVerse>> ranked = new LinkedHashMap<>();
+        Map<String, Double> weights = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            List<QuranVerse> results = running.get(i).getOrDefault(null);
+            if (results == null) {
+                missing.add(source.name);
+                continue;
+            }
+            ranked.put(source.name, results);
+            weights.put(source.name, source.weight);
+        }
+
+        List<ScoredVerse> fused = fuse(ranked, weights, rrfK);
+        int from = Math.max(0, Math.min(offset, fused.size()));
+        int to = Math.max(from, Math.min(fused.size(), from + limit));
+        long elapsed = System.currentTimeMillis() - start;
+
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<String, List<QuranVerse>> entry : ranked.entrySet()) {
+            if (counts.length() > 0) counts.append(", ");
+            counts.append(entry.getKey()).append(' ').append(entry.getValue().size());
+        }
+        Log.d(TAG, "🔀 Fusion RRF: " + fused.size() + " versets (" + counts + ") en " + elapsed + " ms"
+                + (missing.isEmpty() ? "" : ", hors budget: " + missing));
+
+        return new Page(new ArrayList<>(fused.subList(from, to)), from, fused.size(), missing, elapsed);
+    }
+
+    /**
+     * Fusion RRF des classements; à score égal, l'ordre de première apparition est conservé.
+     */
+    static List<ScoredVerse> fuse(Map<String, List<QuranVerse>> ranked, Map<String, Double> weights, int k) {
+        Map<String, ScoredVerse> byReference = new LinkedHashMap<>();
+        for (Map.Entry<String, List<QuranVerse>> entry : ranked.entrySet()) {
+            String source = entry.getKey();
+            Double weight = weights.get(source);
+            int rank = 0;
+            for (QuranVerse verse : entry.getValue()) {
+                if (verse == null || verse.getReference() == null) continue;
+                ScoredVerse scored = byReference.get(verse.getReference());
+                if (scored == null) {
+                    scored = new ScoredVerse(verse);
+                    byReference.put(verse.getReference(), scored);
+                } else if (scored.sources.contains(source)) {
+                    continue; // doublon dans la même source: seul le meilleur rang compte
+                }
+                rank++;
+                scored.score += (weight != null ? weight : 1.0) / (k + rank);
+                scored.sources.add(source);
+            }
+        }
+
+        List<ScoredVerse> fused = new ArrayList<>(byReference.values());
+        Collections.sort(fused, new Comparator<ScoredVerse>() {
+            @Override
+            public int compare(ScoredVerse a, ScoredVerse b) {
+                return Double.compare(b.score, a.score);
+            }
+        });
+        return fused;
+    }
+
+    public static final class ScoredVerse {
+        public final QuranVerse verse;
+        double score;
+        final List<String> sources = new ArrayList<>(2);
+
+        ScoredVerse(QuranVerse verse) {
+            this.verse = verse;
+        }
+
+        public double getScore() { return score; }
+        public List<String> getSources() { return Collections.unmodifiableList(sources); }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %.4f %s", verse.getReference(), score, sources);
+        }
+    }
+
+    /** Une page de résultats fusionnés. */
+    public static final class Page {
+        public final List<ScoredVerse> results;
+        public final int offset;
+        /** Nombre total de versets après fusion (toutes pages) */
+        public final int total;
+        /** Sources sans réponse dans le budget: résultats partiels si non vide */
+        public final List<String> missingSources;
+        public final long elapsedMs;
+
+        Page(List<ScoredVerse> results, int offset, int total, List<String> missingSources, long elapsedMs) {
+            this.results = results;
+            this.offset = offset;
+            this.total = total;
+            this.missingSources = missingSources;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public boolean hasMore() {
+            return offset + results.size() < total;
+        }
+
+        public boolean isPartial() {
+            return !missingSources.isEmpty();
+        }
+
+        public List<QuranVerse> verses() {
+            List<QuranVerse> verses = new ArrayList<>(results.size());
+            for (ScoredVerse scored : results) {
+                verses.add(scored.verse);
+            }
+            return verses;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.besmainfo.biprayer.ai;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.util.Base64;
+import android.util.Log;
+import com.besmainfo.biprayer.utils.BitmapDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prépare une photo avant envoi à Gemini:
+ * - réduction au grand côté cible (une photo 12 MP n'apporte rien de plus au modèle);
+ * - niveaux de gris en option (grilles d'horaires: le texte seul compte, JPEG plus léger);
+ * - qualité JPEG ajustée pour tenir dans un budget d'octets, puis nouvelle réduction si besoin;
+ * - tampon d'encodage réutilisé d'une image à l'autre (rendu par Prepared.close());
+ * - JPEG déjà encodé (capture en mémoire) transmis tel quel s'il respecte déjà ces limites.
+ */
+public final class ImagePreparer {
+    private static final String TAG = "ImagePreparer";
+
+    public static final int DEFAULT_MAX_LONG_EDGE = 1600;
+    public static final int DEFAULT_TARGET_BYTES = 400 * 1024;
+
+    private static final int MAX_QUALITY = 85;
+    private static final int MIN_QUALITY = 50;
+    private static final int MAX_QUALITY_ATTEMPTS = 4;
+    private static final int MIN_LONG_EDGE = 640;
+    private static final float RESCALE_FACTOR = 0.75f;
+    private static final int WRITE_CHUNK_BYTES = 8 * 1024;
+    /** Qualité inconnue: JPEG d'origine transmis sans ré-encodage */
+    public static final int ORIGINAL_QUALITY = 0;
+
+    private final int maxLongEdge;
+    private final int targetBytes;
+    private final boolean grayscale;
+    private final AtomicReference<Buffer> spare = new AtomicReference<>();
+
+    public ImagePreparer(int maxLongEdge, int targetBytes, boolean grayscale) {
+        this.maxLongEdge = maxLongEdge;
+        this.targetBytes = targetBytes;
+        this.grayscale = grayscale;
+    }
+
+    /** Tampon dont le tableau interne est lu sans copie (toByteArray() en ferait une). */
+    private static final class Buffer extends ByteArrayOutputStream {
+        /** false pour un JPEG externe: il n'est pas remis dans le pool */
+        final boolean pooled;
+
+        Buffer(int capacity) {
+            super(capacity);
+            this.pooled = true;
+        }
+
+        Buffer(byte[] data) {
+            super(0);
+            this.buf = data;
+            this.count = data.length;
+            this.pooled = false;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    /**
+     * @return image encodée, à fermer après usage pour rendre le tampon
+     */
+    public Prepared prepare(Bitmap source) {
+        long start = System.nanoTime();
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+
+        Bitmap working = scale(source, maxLongEdge);
+        if (grayscale) {
+            Bitmap gray = toGrayscale(working);
+            if (working != source) working.recycle();
+            working = gray;
+        }
+
+        Buffer buffer = acquireBuffer();
+        int quality = MAX_QUALITY;
+        while (true) {
+            quality = encode(working, buffer);
+            int longEdge = Math.max(working.getWidth(), working.getHeight());
+            if (buffer.size() <= targetBytes || longEdge <= MIN_LONG_EDGE) break;
+
+            // Même à qualité minimale l'image dépasse le budget: on réduit encore les dimensions
+            Bitmap smaller = scale(working, Math.max(MIN_LONG_EDGE, (int) (longEdge * RESCALE_FACTOR)));
+            if (working != source) working.recycle();
+            working = smaller;
+        }
+
+        int width = working.getWidth();
+        int height = working.getHeight();
+        if (working != source) working.recycle();
+
+        long encodeMs = (System.nanoTime() - start) / 1000000;
+        Prepared prepared = new Prepared(buffer, sourceWidth, sourceHeight, width, height, quality, encodeMs);
+        Log.d(TAG, "🖼️ " + prepared);
+        return prepared;
+    }
+
+    /**
+     * JPEG déjà encodé (capture CameraX en mémoire): si son grand côté et sa taille tiennent dans
+     * les limites, il est envoyé tel quel, sans décodage ni ré-encodage (ni niveaux de gris: il est
+     * déjà dans le budget). Sinon il est décodé sous-échantillonné puis préparé comme une photo.
+     */
+    public Prepared prepareJpeg(final byte[] jpeg) throws IOException {
+        long start = System.nanoTime();
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, bounds);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) {
+            throw new IOException("JPEG illisible");
+        }
+
+        if (Math.max(width, height) <= maxLongEdge && jpeg.length <= targetBytes) {
+            long elapsedMs = (System.nanoTime() - start) / 1000000;
+            Prepared prepared = new Prepared(new Buffer(jpeg), width, height, width, height, ORIGINAL_QUALITY, elapsedMs);
+            Log.d(TAG, "🖼️ " + prepared);
+            return prepared;
+        }
+
+        Bitmap decoded = BitmapDecoder.decode(() -> new ByteArrayInputStream(jpeg), 0, 0, maxLongEdge).analysis;
+        try {
+            return prepare(decoded);
+        } finally {
+            decoded.recycle();
+        }
+    }
+
+    /**
+     * Qualité adaptative: la taille d'un JPEG varie à peu près comme la qualité dans cette plage,
+     * donc après un premier essai on vise directement le budget (quelques essais au plus).
+     * @return qualité retenue; le tampon contient l'encodage correspondant
+     */
+    private int encode(Bitmap bitmap, Buffer buffer) {
+        int quality = MAX_QUALITY;
+        for (int attempt = 1; ; attempt++) {
+            buffer.reset();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, buffer);
+            if (buffer.size() <= targetBytes || quality <= MIN_QUALITY || attempt >= MAX_QUALITY_ATTEMPTS) {
+                return quality;
+            }
+            int estimate = (int) (quality * (double) targetBytes / buffer.size());
+            quality = Math.max(MIN_QUALITY, Math.min(quality - 5, estimate));
+        }
+    }
+
+    private static Bitmap scale(Bitmap bitmap, int longEdgeLimit) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int longEdge = Math.max(width, height);
+        if (longEdge <= longEdgeLimit) return bitmap;
+
+        float ratio = (float) longEdgeLimit / longEdge;
+        int scaledWidth = Math.max(1, Math.round(width * ratio));
+        int scaledHeight = Math.max(1, Math.round(height * ratio));
+        return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+    }
+
+    private static Bitmap toGrayscale(Bitmap bitmap) {
+        Bitmap gray = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(0);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+        new Canvas(gray).drawBitmap(bitmap, 0, 0, paint);
+        return gray;
+    }
+
+    private Buffer acquireBuffer() {
+        Buffer buffer = spare.getAndSet(null);
+        return buffer != null ? buffer : new Buffer(targetBytes + targetBytes / 4);
+    }
+
+    private void releaseBuffer(Buffer buffer) {
+        // Un tampon agrandi par une image hors norme n'est pas conservé
+        if (buffer.pooled && buffer.capacity() <= 2 * targetBytes) {
+            buffer.reset();
+            spare.set(buffer);
+        }
+    }
+
+    /** Image encodée: valable jusqu'à close(), qui rend le tampon pour l'image suivante. */
+    public final class Prepared implements Closeable {
+        private Buffer buffer;
+        public final int sourceWidth;
+        public final int sourceHeight;
+        public final int width;
+        public final int height;
+        public final int quality;
+        public final int bytes;
+        public final long encodeMs;
+
+        Prepared(Buffer buffer, int sourceWidth, int sourceHeight, int width, int height, int quality, long encodeMs) {
+            this.buffer = buffer;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.width = width;
+            this.height = height;
+            this.quality = quality;
+            this.bytes = buffer.size();
+            this.encodeMs = encodeMs;
+        }
+
+        public String getMimeType() {
+            return "image/jpeg";
+        }
+
+        /**
+         * Écrit le JPEG par blocs: un encodeur en aval (base64) n'alloue que pour un bloc à la fois.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            checkOpen();
+            byte[] data = buffer.array();
+            for (int offset = 0; offset < bytes; offset += WRITE_CHUNK_BYTES) {
+                out.write(data, offset, Math.min(WRITE_CHUNK_BYTES, bytes - offset));
+            }
+        }
+
+        /** Base64 sans retours à la ligne (Base64.DEFAULT en ajoute tous les 76 caractères). */
+        public String toBase64() {
+            checkOpen();
+            return Base64.encodeToString(buffer.array(), 0, bytes, Base64.NO_WRAP);
+        }
+
+        private void checkOpen() {
+            if (buffer == null) throw new IllegalStateException("Image déjà libérée");
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                releaseBuffer(buffer);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (quality == ORIGINAL_QUALITY) {
+                return String.format(Locale.US, "%dx%d, JPEG d'origine sans ré-encodage, %.1f Ko en %d ms",
+                                     width, height, bytes / 1024.0, encodeMs);
+            }
+            return String.format(Locale.US, "%dx%d -> %dx%d%s, JPEG q%d, %.1f Ko en %d ms",
+                                 sourceWidth, sourceHeight, width, height, grayscale ? " gris" : "",
+                                 quality, bytes / 1024.0, encodeMs);
+        }
+    }
+}
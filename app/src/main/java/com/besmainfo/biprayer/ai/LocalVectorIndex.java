@@ -0,0 +1,160 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Équivalent hors ligne de QdrantClient.search: une collection = un index HNSW en mémoire
+ * + le texte et la référence associés à chaque point. Aucun appel réseau, latence sub-milliseconde.
+ * Variante compacte: stockage quantifié (QuantizedVectorStore) parcouru linéairement.
+ */
+public class LocalVectorIndex implements VectorSearch {
+    private static final String TAG = "LocalVectorIndex";
+
+    private final ConcurrentMap<String, Collection> collections = new ConcurrentHashMap<>();
+    private final HnswIndex.Config config;
+    private final QuantizedVectorStore.Mode quantization;
+    private final boolean rerank;
+
+    public LocalVectorIndex() {
+        this(HnswIndex.DEFAULT_CONFIG);
+    }
+
+    public LocalVectorIndex(HnswIndex.Config config) {
+        this.config = config;
+        this.quantization = null;
+        this.rerank = false;
+    }
+
+    /**
+     * Collections quantifiées (int8 ou PQ) au lieu de HNSW float, pour limiter la mémoire.
+     */
+    public LocalVectorIndex(QuantizedVectorStore.Mode quantization, boolean rerank) {
+        this.config = null;
+        this.quantization = quantization;
+        this.rerank = rerank;
+    }
+
+    /**
+     * Crée la collection si elle n'existe pas (même sémantique que QdrantClient.createCollection).
+     */
+    public boolean createCollection(String collectionName, int vectorSize) {
+        Collection existing = collections.get(collectionName);
+        if (existing != null) {
+            return existing.dimension == vectorSize;
+        }
+        Collection created = quantization != null
+                ? new Collection(vectorSize, new QuantizedVectorStore(vectorSize, quantization, rerank))
+                : new Collection(vectorSize, new HnswIndex(vectorSize, config));
+        // Initialisations concurrentes (services Coran): une seule collection gagne, les autres s'y rallient
+        existing = collections.putIfAbsent(collectionName, created);
+        if (existing != null) {
+            return existing.dimension == vectorSize;
+        }
+        Log.d(TAG, "Collection locale créée: " + collectionName + " (" + vectorSize + " dimensions)");
+        return true;
+    }
+
+    public void add(String collectionName, float[] vector, String text) {
+        add(collectionName, vector, text, "");
+    }
+
+    public void add(String collectionName, float[] vector, String text, String reference) {
+        Collection collection = collections.get(collectionName);
+        if (collection == null) {
+            throw new IllegalStateException("Collection inconnue: " + collectionName);
+        }
+        collection.add(vector, text, reference);
+    }
+
+    public int size(String collectionName) {
+        Collection collection = collections.get(collectionName);
+        return collection != null ? collection.size() : 0;
+    }
+
+    /**
+     * Mémoire occupée par les vecteurs de la collection, comparée au stockage float.
+     */
+    public String getMemoryReport(String collectionName) {
+        Collection collection = collections.get(collectionName);
+        if (collection == null) return collectionName + ": absente";
+        if (collection.store != null) return collectionName + " " + collection.store.getMemoryReport();
+        return collectionName + " HNSW float: " + (long) collection.size() * collection.dimension * 4 / 1024 + " Ko";
+    }
+
+    @Override
+    public List<QdrantClient.SearchResult> search(String collectionName, float[] vector, int limit) {
+        List<QdrantClient.SearchResult> results = new ArrayList<>();
+        Collection collection = collections.get(collectionName);
+        if (collection == null) {
+            Log.w(TAG, "Collection locale absente: " + collectionName);
+            return results;
+        }
+
+        HnswIndex.Hits hits = collection.search(vector, limit);
+        for (int i = 0; i < hits.size(); i++) {
+            int id = hits.ids[i];
+            results.add(new QdrantClient.SearchResult(collection.textOf(id), hits.scores[i], collection.referenceOf(id)));
+        }
+        return results;
+    }
+
+    @Override
+    public List<QdrantClient.SearchResult> searchBatch(String collectionName, List<float[]> vectors, int limit) {
+        List<List<QdrantClient.SearchResult>> perQuery = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            perQuery.add(search(collectionName, vector, limit));
+        }
+        return QdrantClient.mergeResults(perQuery);
+    }
+
+    private static class Collection {
+        final int dimension;
+        final HnswIndex index;
+        final QuantizedVectorStore store;
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> references = new ArrayList<>();
+
+        Collection(int dimension, HnswIndex index) {
+            this.dimension = dimension;
+            this.index = index;
+            this.store = null;
+        }
+
+        Collection(int dimension, QuantizedVectorStore store) {
+            this.dimension = dimension;
+            this.index = null;
+            this.store = store;
+        }
+
+        int size() {
+            return index != null ? index.size() : store.size();
+        }
+
+        HnswIndex.Hits search(float[] vector, int limit) {
+            return index != null ? index.search(vector, limit) : store.search(vector, limit);
+        }
+
+        synchronized void add(float[] vector, String text, String reference) {
+            int id = index != null ? index.add(vector) : store.add(vector);
+            while (texts.size() <= id) {
+                texts.add(null);
+                references.add("");
+            }
+            texts.set(id, text);
+            references.set(id, reference);
+        }
+
+        synchronized String textOf(int id) {
+            return texts.get(id);
+        }
+
+        synchronized String referenceOf(int id) {
+            return references.get(id);
+        }
+    }
+}
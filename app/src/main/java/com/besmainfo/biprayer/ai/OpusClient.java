@@ -3,18 +3,17 @@ package com.besmainfo.biprayer.ai;
 import android.content.Context;
 import android.util.Log;
 import org.json.JSONObject;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
 
 import com.besmainfo.biprayer.R;
 
 public class OpusClient {
     private static final String TAG = "OpusClient";
+    private static final int SYNTHESIS_TIMEOUT_MS = 30000;
+    private static final int TEST_TIMEOUT_MS = 15000;
     private final String apiKey;
     private final Context context;
+    private final HttpTransport transport = HttpTransport.getDefault();
 
     public OpusClient(Context context, String apiKey) {
         this.context = context;
@@ -26,6 +25,18 @@ public class OpusClient {
      * Synthèse vocale complète avec voix et langue - MODE RÉEL
      */
     public String synthesizeSpeech(String text, String voice, String language) {
+        return synthesize(text, voice, language, Deadline.in(SYNTHESIS_TIMEOUT_MS), null);
+    }
+
+    /**
+     * Version asynchrone: la requête est coupée à l'échéance ou sur cancel().
+     */
+    public AiFuture<String> synthesizeSpeechAsync(final String text, final String voice, final String language,
+                                                  Deadline deadline) {
+        return AiFuture.supply(deadline, future -> synthesize(text, voice, language, future.getDeadline(), future));
+    }
+
+    private String synthesize(String text, String voice, String language, Deadline deadline, AiFuture<?> scope) {
         if (!isConfigured()) {
             Log.e(TAG, "Opus non configuré - Mode démo");
             return context.getString(R.string.opus_not_configured);
@@ -37,18 +48,7 @@ public class OpusClient {
 
         Log.d(TAG, "🚀 Synthèse vocale réelle - Texte: " + text.substring(0, Math.min(50, text.length())) + "...");
 
-        HttpURLConnection conn = null;
         try {
-            URL url = new URL("https://api.opus.ai/v1/synthesize");
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Authorization", "Bearer " + apiKey);
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(30000);
-            conn.setDoOutput(true);
-
             // Construction de la requête complète
             JSONObject requestBody = new JSONObject();
             requestBody.put("text", text);
@@ -69,60 +69,37 @@ public class OpusClient {
             String jsonInput = requestBody.toString();
             Log.d(TAG, "📤 Envoi requête synthèse vocale");
 
-            // Envoi de la requête
-            OutputStream os = conn.getOutputStream();
-            os.write(jsonInput.getBytes("utf-8"));
-            os.flush();
-            os.close();
-
-            // Lecture de la réponse
-            int responseCode = conn.getResponseCode();
-            Log.d(TAG, "📥 Réponse code: " + responseCode);
-
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8")
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line.trim());
+            HttpTransport.Request request = new HttpTransport.Request("POST", "https://api.opus.ai/v1/synthesize")
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("Accept", "application/json")
+                    .timeouts(deadline.timeoutMs(SYNTHESIS_TIMEOUT_MS), deadline.timeoutMs(SYNTHESIS_TIMEOUT_MS))
+                    .body(jsonInput);
+
+            // Envoi de la requête et lecture de la réponse
+            try (HttpTransport.Response response = transport.execute(request, scope)) {
+                int responseCode = response.code;
+                Log.d(TAG, "📥 Réponse code: " + responseCode);
+
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    String result = parseOpusResponse(response.bodyString());
+                    Log.d(TAG, "✅ Synthèse vocale réussie");
+                    return result;
+
+                } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                    return context.getString(R.string.opus_unauthorized);
+                } else if (responseCode == HttpURLConnection.HTTP_BAD_REQUEST) {
+                    return context.getString(R.string.opus_bad_request);
+                } else {
+                    // Lecture de l'erreur détaillée
+                    Log.e(TAG, "❌ Erreur API Opus: " + response.bodyString());
+                    return context.getString(R.string.opus_api_error) + " (" + responseCode + "): " + getOpusErrorMessage(responseCode);
                 }
-                reader.close();
-
-                String result = parseOpusResponse(response.toString());
-                Log.d(TAG, "✅ Synthèse vocale réussie");
-                return result;
-                
-            } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
-                return context.getString(R.string.opus_unauthorized);
-            } else if (responseCode == HttpURLConnection.HTTP_BAD_REQUEST) {
-                return context.getString(R.string.opus_bad_request);
-            } else {
-                // Lecture de l'erreur détaillée
-                BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(conn.getErrorStream(), "utf-8")
-                );
-                StringBuilder errorResponse = new StringBuilder();
-                String errorLine;
-                
-                while ((errorLine = errorReader.readLine()) != null) {
-                    errorResponse.append(errorLine.trim());
-                }
-                errorReader.close();
-                
-                Log.e(TAG, "❌ Erreur API Opus: " + errorResponse.toString());
-                return context.getString(R.string.opus_api_error) + " (" + responseCode + "): " + getOpusErrorMessage(responseCode);
             }
 
         } catch (Exception e) {
             Log.e(TAG, "❌ Exception synthèse vocale", e);
             return context.getString(R.string.opus_connection_error) + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
@@ -137,39 +114,35 @@ public class OpusClient {
      * Test de connexion à l'API Opus - MODE RÉEL
      */
     public String testConnection() {
+        return checkConnection(Deadline.in(TEST_TIMEOUT_MS), null);
+    }
+
+    public AiFuture<String> testConnectionAsync(Deadline deadline) {
+        return AiFuture.supply(deadline, future -> checkConnection(future.getDeadline(), future));
+    }
+
+    private String checkConnection(Deadline deadline, AiFuture<?> scope) {
         if (!isConfigured()) {
             return context.getString(R.string.opus_not_configured);
         }
 
         Log.d(TAG, "🧪 Test connexion Opus API");
 
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL("https://api.opus.ai/v1/voices");
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Authorization", "Bearer " + apiKey);
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setConnectTimeout(15000);
-
-            int responseCode = conn.getResponseCode();
+        HttpTransport.Request request = new HttpTransport.Request("GET", "https://api.opus.ai/v1/voices")
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Accept", "application/json")
+                .timeouts(deadline.timeoutMs(TEST_TIMEOUT_MS), deadline.timeoutMs(TEST_TIMEOUT_MS));
+
+        try (HttpTransport.Response response = transport.execute(request, scope)) {
+            int responseCode = response.code;
             Log.d(TAG, "📥 Test connexion - Code: " + responseCode);
             
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8")
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line.trim());
-                }
-                reader.close();
+                String body = response.bodyString();
 
                 // Analyser la réponse pour extraire le nombre de voix
                 try {
-                    JSONObject jsonResponse = new JSONObject(response.toString());
+                    JSONObject jsonResponse = new JSONObject(body);
                     int voiceCount = jsonResponse.optJSONArray("voices").length();
                     return "✅ " + context.getString(R.string.opus_connection_success) + " (" + voiceCount + " voix disponibles)";
                 } catch (Exception e) {
@@ -182,10 +155,6 @@ public class OpusClient {
         } catch (Exception e) {
             Log.e(TAG, "❌ Test connexion échoué", e);
             return context.getString(R.string.opus_connection_test_failed) + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
@@ -0,0 +1,350 @@
+package com.besmainfo.biprayer.ai;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import com.besmainfo.biprayer.utils.BitmapDecoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des analyses d'images par empreinte perceptuelle: la même affiche d'horaires photographiée
+ * une seconde fois (cadrage, lumière, compression légèrement différents) retrouve le résultat
+ * précédent sans appel au modèle de vision.
+ *
+ * Empreinte = double dHash 128 bits (gradients horizontaux et verticaux d'une grille 9x9 de luminance).
+ * Recherche = plus proche voisin en distance de Hamming sous un seuil; parcours linéaire,
+ * quelques centaines d'entrées à deux XOR + bitCount chacune.
+ * Persistance: un seul fichier binaire, réécrit à chaque ajout; taille bornée en entrées (LRU) et TTL.
+ * Chaque entrée porte le mois de l'analyse: les affiches mensuelles d'un même modèle ont des empreintes
+ * presque identiques, un résultat n'est donc resservi que pendant le mois où il a été obtenu.
+ */
+public class PerceptualImageCache {
+    private static final String TAG = "PerceptualImageCache";
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_NAME = "image_hashes.bin";
+
+    private static final int GRID = 9;
+    /** Pixels moyennés par case et par côté: le bruit du capteur s'y annule */
+    private static final int BLOCK = 16;
+    /** Écart minimal entre cases voisines (~2 niveaux de gris): les zones unies donnent des bits stables */
+    private static final long MIN_GRADIENT = 2L * 1000 * BLOCK * BLOCK;
+    /** Longueur max conservée par résultat (une analyse d'horaires tient largement dedans) */
+    private static final int MAX_RESULT_CHARS = 8 * 1024;
+
+    /** Borne aussi les corrections d'affiche en cours de mois (le changement de mois est traité à part) */
+    public static final long DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    /** Bits différents tolérés sur 128 (même affiche reprise: typiquement 0 à 6) */
+    public static final int DEFAULT_MAX_DISTANCE = 10;
+
+    private static PerceptualImageCache defaultCache;
+
+    private final File file;
+    private final int maxEntries;
+    private final int maxDistance;
+    private final long ttlMs;
+
+    // Ordre d'accès: la première entrée est la moins récemment utilisée
+    private final LinkedHashMap<Hash, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private boolean loaded;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong hitDistanceSum = new AtomicLong();
+
+    private static final class Entry {
+        final String result;
+        final long createdAt;
+        /** Mois de l'analyse, aaaamm */
+        final int month;
+
+        Entry(String result, long createdAt, int month) {
+            this.result = result;
+            this.createdAt = createdAt;
+            this.month = month;
+        }
+    }
+
+    /** @param file fichier de persistance, ou null pour un cache uniquement en mémoire */
+    public PerceptualImageCache(File file) {
+        this(file, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_DISTANCE, DEFAULT_TTL_MS);
+    }
+
+    public PerceptualImageCache(File file, int maxEntries, int maxDistance, long ttlMs) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.maxDistance = maxDistance;
+        this.ttlMs = ttlMs;
+    }
+
+    /** Cache partagé, sous getCacheDir()/image_hashes.bin. */
+    public static synchronized PerceptualImageCache getDefault(Context context) {
+        if (defaultCache == null) {
+            File file = null;
+            try {
+                file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+            } catch (Exception e) {
+                Log.w(TAG, "Cache disque indisponible, mémoire seule: " + e.getMessage());
+            }
+            defaultCache = new PerceptualImageCache(file);
+        }
+        return defaultCache;
+    }
+
+    // ============================================================
+    //  EMPREINTE
+    // ============================================================
+
+    /** Empreinte perceptuelle 128 bits; égalité exacte pour equals/hashCode, distance pour la recherche. */
+    public static final class Hash {
+        final long horizontal;
+        final long vertical;
+
+        Hash(long horizontal, long vertical) {
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+        }
+
+        public int distance(Hash other) {
+            return Long.bitCount(horizontal ^ other.horizontal) + Long.bitCount(vertical ^ other.vertical);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Hash)) return false;
+            Hash other = (Hash) o;
+            return horizontal == other.horizontal && vertical == other.vertical;
+        }
+
+        @Override
+        public int hashCode() {
+            long mixed = horizontal * 31 + vertical;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%016x%016x", horizontal, vertical);
+        }
+    }
+
+    /**
+     * Réduit l'image à 144x144, somme des blocs 16x16 en luminance (grille 9x9), puis un bit par paire
+     * de cases voisines: nettement plus clair à gauche / en haut. Insensible à la taille, à la
+     * compression, au bruit et aux variations globales de luminosité.
+     */
+    public static Hash hash(Bitmap image) {
+        int side = GRID * BLOCK;
+        Bitmap small = Bitmap.createScaledBitmap(image, side, side, true);
+        int[] pixels = new int[side * side];
+        small.getPixels(pixels, 0, side, 0, 0, side, side);
+        if (small != image) small.recycle();
+
+        long[] grid = new long[GRID * GRID];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int p = pixels[y * side + x];
+                // Luminance entière (coefficients BT.601 x 1000)
+                int luma = (299 * ((p >> 16) & 0xFF) + 587 * ((p >> 8) & 0xFF) + 114 * (p & 0xFF));
+                grid[(y / BLOCK) * GRID + x / BLOCK] += luma;
+            }
+        }
+
+        long horizontal = 0;
+        long vertical = 0;
+        for (int row = 0; row < GRID - 1; row++) {
+            for (int col = 0; col < GRID - 1; col++) {
+                long cell = grid[row * GRID + col];
+                horizontal = (horizontal << 1) | (cell - grid[row * GRID + col + 1] > MIN_GRADIENT ? 1 : 0);
+                vertical = (vertical << 1) | (cell - grid[(row + 1) * GRID + col] > MIN_GRADIENT ? 1 : 0);
+            }
+        }
+        return new Hash(horizontal, vertical);
+    }
+
+    /**
+     * Empreinte d'un JPEG (capture en mémoire): décodage très sous-échantillonné, quelques ms.
+     * @return null si le JPEG est illisible (l'analyse se fait alors sans cache)
+     */
+    public static Hash hashJpeg(final byte[] jpeg) {
+        try {
+            Bitmap small = BitmapDecoder.decodePreview(() -> new ByteArrayInputStream(jpeg),
+                                                       GRID * BLOCK, GRID * BLOCK);
+            try {
+                return hash(small);
+            } finally {
+                small.recycle();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Empreinte impossible: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ============================================================
+    //  LECTURE / ÉCRITURE
+    // ============================================================
+
+    /** @return le résultat de l'image connue la plus proche sous le seuil, analysée ce mois-ci, ou null */
+    public synchronized String get(Hash hash) {
+        if (hash == null) return null;
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        int month = currentMonth();
+
+        Hash best = null;
+        int bestDistance = maxDistance + 1;
+        Iterator<Map.Entry<Hash, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Hash, Entry> candidate = it.next();
+            if (candidate.getValue().createdAt + ttlMs <= now || candidate.getValue().month != month) {
+                // Mois révolu: l'affiche du nouveau mois ressemble à l'ancienne mais ses horaires diffèrent
+                it.remove();
+                continue;
+            }
+            int distance = hash.distance(candidate.getKey());
+            if (distance < bestDistance) {
+                best = candidate.getKey();
+                bestDistance = distance;
+                if (distance == 0) break;
+            }
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        hitDistanceSum.addAndGet(bestDistance);
+        Log.d(TAG, "🎯 Image reconnue (distance " + bestDistance + "/128), analyse servie depuis le cache");
+        return entries.get(best).result; // get() la replace en fin d'ordre LRU
+    }
+
+    public synchronized void put(Hash hash, String result) {
+        if (hash == null || result == null || result.length() > MAX_RESULT_CHARS) return;
+        ensureLoaded();
+        entries.remove(hash);
+        entries.put(hash, new Entry(result, System.currentTimeMillis(), currentMonth()));
+
+        Iterator<Hash> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+        stores.incrementAndGet();
+        save();
+    }
+
+    private static int currentMonth() {
+        Calendar now = Calendar.getInstance();
+        return now.get(Calendar.YEAR) * 100 + now.get(Calendar.MONTH) + 1;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(TAG, "Suppression impossible: " + file.getName());
+        }
+    }
+
+    // ============================================================
+    //  PERSISTANCE
+    // ============================================================
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (file == null || !file.isFile()) return;
+
+        long now = System.currentTimeMillis();
+        int month = currentMonth();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                file.delete();
+                return;
+            }
+            int count = in.readInt();
+            // Écrites de la moins à la plus récemment utilisée: l'ordre LRU est restauré tel quel
+            for (int i = 0; i < count; i++) {
+                Hash hash = new Hash(in.readLong(), in.readLong());
+                long createdAt = in.readLong();
+                int entryMonth = in.readInt();
+                String result = in.readUTF();
+                if (createdAt + ttlMs > now && entryMonth == month) {
+                    entries.put(hash, new Entry(result, createdAt, entryMonth));
+                }
+            }
+            Log.d(TAG, "📂 " + entries.size() + " empreintes d'images chargées");
+        } catch (IOException e) {
+            Log.w(TAG, "Cache d'empreintes illisible: " + e.getMessage());
+            entries.clear();
+            file.delete();
+        }
+    }
+
+    private void save() {
+        if (file == null) return;
+        File temp = new File(file.getPath() + ".tmp");
+        List<Map.Entry<Hash, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Hash, Entry> entry : snapshot) {
+                out.writeLong(entry.getKey().horizontal);
+                out.writeLong(entry.getKey().vertical);
+                out.writeLong(entry.getValue().createdAt);
+                out.writeInt(entry.getValue().month);
+                out.writeUTF(entry.getValue().result);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Écriture cache d'empreintes impossible: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    // ============================================================
+    //  STATISTIQUES
+    // ============================================================
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0.0;
+    }
+
+    public synchronized String getStats() {
+        long hitCount = hits.get();
+        return String.format(Locale.US,
+                "Cache images: %d succès, %d échecs, taux %.0f%%, distance moyenne %.1f, %d écritures | %d/%d empreintes",
+                hitCount, misses.get(), 100.0 * getHitRate(),
+                hitCount > 0 ? (double) hitDistanceSum.get() / hitCount : 0.0,
+                stores.get(), entries.size(), maxEntries);
+    }
+}
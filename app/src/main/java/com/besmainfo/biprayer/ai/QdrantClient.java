@@ -4,21 +4,32 @@ import android.content.Context;
 import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.besmainfo.biprayer.R;
 
-public class QdrantClient {
+public class QdrantClient implements VectorSearch {
     private static final String TAG = "QdrantClient";
+    public static final int DEFAULT_UPSERT_CHUNK_SIZE = 256;
+    public static final int DEFAULT_UPSERT_PARALLELISM = 4;
+    private static final float SCORE_THRESHOLD = 0.3f; // Seuil de pertinence
+    private static final int SEARCH_TIMEOUT_MS = 20000;
     private final String baseUrl;
     private final String apiKey;
     private final Context context;
+    private final HttpTransport transport = HttpTransport.getDefault();
+    private static final SingleFlight<SearchKey, List<SearchResult>> SEARCH_FLIGHTS = new SingleFlight<>("Qdrant search");
 
     public QdrantClient(Context context, String baseUrl, String apiKey) {
         this.context = context;
@@ -34,70 +45,64 @@ public class QdrantClient {
     /**
      * Recherche vectorielle - MODE RÉEL
      */
+    @Override
     public List<SearchResult> search(String collectionName, float[] vector, int limit) {
-        List<SearchResult> results = new ArrayList<>();
-        
         if (!isConfigured()) {
+            List<SearchResult> results = new ArrayList<>();
             Log.e(TAG, "Qdrant non configuré - Mode démo");
             results.add(new SearchResult(context.getString(R.string.qdrant_not_configured), 0.0f));
             return results;
         }
 
+        // Recherches simultanées identiques regroupées; chaque appelant reçoit sa propre liste
+        try {
+            return new ArrayList<>(SEARCH_FLIGHTS.execute(new SearchKey(baseUrl, collectionName, vector, limit),
+                                                          () -> executeSearch(collectionName, vector, limit,
+                                                                              Deadline.in(SEARCH_TIMEOUT_MS), null)));
+        } catch (Exception e) {
+            List<SearchResult> results = new ArrayList<>();
+            Log.e(TAG, "❌ Exception recherche", e);
+            results.add(new SearchResult(context.getString(R.string.qdrant_error) + e.getMessage(), 0.0f));
+            return results;
+        }
+    }
+
+    /**
+     * Version asynchrone de search: la requête est coupée à l'échéance ou sur cancel().
+     * Pas de regroupement SingleFlight, pour que l'annulation ne touche que cet appelant.
+     */
+    public AiFuture<List<SearchResult>> searchAsync(final String collectionName, final float[] vector, final int limit,
+                                                    Deadline deadline) {
+        if (!isConfigured()) {
+            return AiFuture.completed(search(collectionName, vector, limit));
+        }
+        return AiFuture.supply(deadline, future -> executeSearch(collectionName, vector, limit, future.getDeadline(), future));
+    }
+
+    private List<SearchResult> executeSearch(String collectionName, float[] vector, int limit,
+                                             Deadline deadline, AiFuture<?> scope) {
+        List<SearchResult> results = new ArrayList<>();
+        int timeoutMs = deadline.timeoutMs(SEARCH_TIMEOUT_MS);
+
         Log.d(TAG, "🚀 Recherche vectorielle réelle - Collection: " + collectionName + ", Vecteur: " + vector.length + " dimensions");
 
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL(baseUrl + "/collections/" + collectionName + "/points/search");
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            
-            if (apiKey != null && !apiKey.isEmpty()) {
-                conn.setRequestProperty("api-key", apiKey);
-            }
-            
-            conn.setConnectTimeout(20000);
-            conn.setReadTimeout(20000);
-            conn.setDoOutput(true);
-
-            // Construction de la requête de recherche
-            JSONObject requestBody = new JSONObject();
-            JSONArray vectorArray = new JSONArray();
-            for (float v : vector) {
-                vectorArray.put(v);
-            }
-            
-            requestBody.put("vector", vectorArray);
-            requestBody.put("limit", limit);
-            requestBody.put("with_payload", true);
-            requestBody.put("with_vector", false);
-            requestBody.put("score_threshold", 0.3); // Seuil de pertinence
-
-            String jsonInput = requestBody.toString();
-            Log.d(TAG, "📤 Envoi requête recherche");
-
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonInput.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
+        // Requête écrite directement dans le flux (vecteur sans boxing)
+        HttpTransport.Request request = newRequest("POST", "/collections/" + collectionName + "/points/search", timeoutMs, timeoutMs)
+                .body(out -> QdrantJson.writeSearch(out, vector, limit, SCORE_THRESHOLD));
 
-            int responseCode = conn.getResponseCode();
+        Log.d(TAG, "📤 Envoi requête recherche");
+        try (HttpTransport.Response response = transport.execute(request, scope)) {
+            int responseCode = response.code;
             Log.d(TAG, "📥 Réponse code: " + responseCode);
 
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8")
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line.trim());
-                }
-                reader.close();
-
-                List<SearchResult> searchResults = parseSearchResults(response.toString());
+                final List<SearchResult> searchResults = new ArrayList<>(limit);
+                QdrantJson.readSearchResults(response.body(), new QdrantJson.HitListener() {
+                    @Override
+                    public void onHit(int query, float score, String text, String reference) {
+                        searchResults.add(new SearchResult(text, score, reference));
+                    }
+                });
                 Log.d(TAG, "✅ Recherche réussie - " + searchResults.size() + " résultats");
                 return searchResults;
                 
@@ -109,15 +114,98 @@ public class QdrantClient {
         } catch (Exception e) {
             Log.e(TAG, "❌ Exception recherche", e);
             results.add(new SearchResult(context.getString(R.string.qdrant_error) + e.getMessage(), 0.0f));
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
         
         return results;
     }
 
+    /**
+     * Recherche multi-requêtes - MODE RÉEL
+     * Un seul aller-retour (/points/search/batch) au lieu d'un appel par vecteur.
+     */
+    @Override
+    public List<SearchResult> searchBatch(String collectionName, List<float[]> vectors, int limit) {
+        return executeSearchBatch(collectionName, vectors, limit, Deadline.in(SEARCH_TIMEOUT_MS), null);
+    }
+
+    /** Version asynchrone de searchBatch, coupée à l'échéance ou sur cancel(). */
+    public AiFuture<List<SearchResult>> searchBatchAsync(final String collectionName, final List<float[]> vectors,
+                                                         final int limit, Deadline deadline) {
+        return AiFuture.supply(deadline,
+                future -> executeSearchBatch(collectionName, vectors, limit, future.getDeadline(), future));
+    }
+
+    private List<SearchResult> executeSearchBatch(String collectionName, List<float[]> vectors, int limit,
+                                                  Deadline deadline, AiFuture<?> scope) {
+        List<SearchResult> results = new ArrayList<>();
+        if (vectors.isEmpty()) return results;
+
+        if (!isConfigured()) {
+            Log.e(TAG, "Qdrant non configuré - Mode démo");
+            results.add(new SearchResult(context.getString(R.string.qdrant_not_configured), 0.0f));
+            return results;
+        }
+
+        Log.d(TAG, "🚀 Recherche vectorielle groupée - Collection: " + collectionName + ", " + vectors.size() + " requêtes");
+
+        int timeoutMs = deadline.timeoutMs(SEARCH_TIMEOUT_MS);
+        HttpTransport.Request request = newRequest("POST", "/collections/" + collectionName + "/points/search/batch", timeoutMs, timeoutMs)
+                .body(out -> QdrantJson.writeSearchBatch(out, vectors, limit, SCORE_THRESHOLD));
+
+        try (HttpTransport.Response response = transport.execute(request, scope)) {
+            int responseCode = response.code;
+            Log.d(TAG, "📥 Réponse code: " + responseCode);
+
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                final List<List<SearchResult>> perQuery = new ArrayList<>();
+                QdrantJson.readBatchResults(response.body(), new QdrantJson.HitListener() {
+                    @Override
+                    public void onHit(int query, float score, String text, String reference) {
+                        while (perQuery.size() <= query) perQuery.add(new ArrayList<SearchResult>());
+                        perQuery.get(query).add(new SearchResult(text, score, reference));
+                    }
+                });
+                List<SearchResult> merged = mergeResults(perQuery);
+                Log.d(TAG, "✅ Recherche groupée réussie - " + merged.size() + " résultats");
+                return merged;
+
+            } else {
+                Log.e(TAG, "❌ Erreur recherche groupée: " + responseCode);
+                results.add(new SearchResult(context.getString(R.string.qdrant_search_error) + responseCode, 0.0f));
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Exception recherche groupée", e);
+            results.add(new SearchResult(context.getString(R.string.qdrant_error) + e.getMessage(), 0.0f));
+        }
+
+        return results;
+    }
+
+    /**
+     * Fusion des résultats de plusieurs requêtes: un résultat par texte (meilleur score), tri décroissant.
+     */
+    static List<SearchResult> mergeResults(List<List<SearchResult>> perQuery) {
+        Map<String, SearchResult> best = new LinkedHashMap<>();
+        for (List<SearchResult> results : perQuery) {
+            for (SearchResult result : results) {
+                SearchResult current = best.get(result.text);
+                if (current == null || result.score > current.score) {
+                    best.put(result.text, result);
+                }
+            }
+        }
+
+        List<SearchResult> merged = new ArrayList<>(best.values());
+        Collections.sort(merged, new Comparator<SearchResult>() {
+            @Override
+            public int compare(SearchResult a, SearchResult b) {
+                return Float.compare(b.score, a.score);
+            }
+        });
+        return merged;
+    }
+
     /**
      * Création de collection - MODE RÉEL
      */
@@ -129,19 +217,7 @@ public class QdrantClient {
 
         Log.d(TAG, "🚀 Création collection: " + collectionName + " (" + vectorSize + " dimensions)");
 
-        HttpURLConnection conn = null;
         try {
-            URL url = new URL(baseUrl + "/collections/" + collectionName);
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("PUT");
-            conn.setRequestProperty("Content-Type", "application/json");
-            
-            if (apiKey != null && !apiKey.isEmpty()) {
-                conn.setRequestProperty("api-key", apiKey);
-            }
-            
-            conn.setDoOutput(true);
-
             // Configuration de la collection
             JSONObject config = new JSONObject();
             JSONObject params = new JSONObject();
@@ -159,33 +235,28 @@ public class QdrantClient {
             config.put("params", params);
 
             String jsonInput = config.toString();
-
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonInput.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
-
-            int responseCode = conn.getResponseCode();
-            Log.d(TAG, "📥 Création collection - Code: " + responseCode);
-            
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                Log.d(TAG, "✅ Collection créée: " + collectionName);
-                return true;
-            } else if (responseCode == 400) {
-                Log.w(TAG, "⚠️ Collection existe déjà: " + collectionName);
-                return true; // La collection existe déjà
-            } else {
-                Log.e(TAG, "❌ Erreur création collection: " + responseCode);
-                return false;
+            HttpTransport.Request request = newRequest("PUT", "/collections/" + collectionName, 15000, 15000)
+                    .body(jsonInput);
+
+            try (HttpTransport.Response response = transport.execute(request)) {
+                int responseCode = response.code;
+                Log.d(TAG, "📥 Création collection - Code: " + responseCode);
+
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    Log.d(TAG, "✅ Collection créée: " + collectionName);
+                    return true;
+                } else if (responseCode == 400) {
+                    Log.w(TAG, "⚠️ Collection existe déjà: " + collectionName);
+                    return true; // La collection existe déjà
+                } else {
+                    Log.e(TAG, "❌ Erreur création collection: " + responseCode);
+                    return false;
+                }
             }
 
         } catch (Exception e) {
             Log.e(TAG, "❌ Exception création collection", e);
             return false;
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
@@ -199,37 +270,16 @@ public class QdrantClient {
 
         Log.d(TAG, "🧪 Test connexion Qdrant");
 
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL(baseUrl + "/collections");
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Accept", "application/json");
-            
-            if (apiKey != null && !apiKey.isEmpty()) {
-                conn.setRequestProperty("api-key", apiKey);
-            }
-            
-            conn.setConnectTimeout(15000);
-
-            int responseCode = conn.getResponseCode();
+        try (HttpTransport.Response response = transport.execute(newRequest("GET", "/collections", 15000, 15000))) {
+            int responseCode = response.code;
             Log.d(TAG, "📥 Test connexion - Code: " + responseCode);
             
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8")
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line.trim());
-                }
-                reader.close();
+                String body = response.bodyString();
 
                 // Analyser la réponse pour compter les collections
                 try {
-                    JSONObject jsonResponse = new JSONObject(response.toString());
+                    JSONObject jsonResponse = new JSONObject(body);
                     JSONObject result = jsonResponse.getJSONObject("result");
                     JSONArray collections = result.getJSONArray("collections");
                     return "✅ Connexion Qdrant réussie (" + collections.length() + " collections)";
@@ -243,50 +293,159 @@ public class QdrantClient {
         } catch (Exception e) {
             Log.e(TAG, "❌ Test connexion échoué", e);
             return "❌ Erreur connexion Qdrant: " + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
-    private List<SearchResult> parseSearchResults(String jsonResponse) {
-        List<SearchResult> results = new ArrayList<>();
-        
+    /**
+     * Ingestion par lots - MODE RÉEL
+     * Les points sont découpés en lots de chunkSize, dont `parallelism` sont envoyés en même temps
+     * (PUT /collections/{c}/points?wait=true). Les lots en échec sont comptés dans le rapport.
+     */
+    public UpsertReport upsertPoints(String collectionName, List<Point> points, int chunkSize, int parallelism) {
+        long start = System.nanoTime();
+        if (!isConfigured()) {
+            Log.e(TAG, "Qdrant non configuré - upsert ignoré");
+            return new UpsertReport(0, 0, 0, 0);
+        }
+
+        int size = Math.max(1, chunkSize);
+        int chunks = (points.size() + size - 1) / size;
+        Log.d(TAG, "🚀 Upsert " + points.size() + " points - " + chunks + " lots de " + size +
+                   ", " + parallelism + " en parallèle");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chunks)));
+        List<Future<Boolean>> pending = new ArrayList<>();
         try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-            JSONObject result = jsonObject.getJSONObject("result");
-            JSONArray resultArray = result.getJSONArray("result");
-            
-            Log.d(TAG, "📊 " + resultArray.length() + " résultats trouvés");
-            
-            for (int i = 0; i < resultArray.length(); i++) {
-                JSONObject searchResult = resultArray.getJSONObject(i);
-                JSONObject payload = searchResult.getJSONObject("payload");
-                float score = (float) searchResult.getDouble("score");
-                
-                String text = payload.optString("text", "No text");
-                String id = searchResult.optString("id", "unknown");
-                
-                Log.d(TAG, "🔍 Résultat " + i + ": Score=" + score + ", ID=" + id);
-                results.add(new SearchResult(text, score));
+            for (int from = 0; from < points.size(); from += size) {
+                final List<Point> chunk = points.subList(from, Math.min(points.size(), from + size));
+                pending.add(executor.submit(() -> upsertChunk(collectionName, chunk)));
             }
-            
+
+            int failed = 0;
+            int stored = 0;
+            for (int i = 0; i < pending.size(); i++) {
+                boolean ok;
+                try {
+                    ok = pending.get(i).get();
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Lot " + i + " interrompu", e);
+                    ok = false;
+                }
+                if (ok) {
+                    stored += Math.min(size, points.size() - i * size);
+                } else {
+                    failed++;
+                }
+            }
+
+            UpsertReport report = new UpsertReport(stored, chunks, failed, (System.nanoTime() - start) / 1_000_000);
+            Log.d(TAG, (failed == 0 ? "✅ " : "⚠️ ") + report);
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public UpsertReport upsertPoints(String collectionName, List<Point> points) {
+        return upsertPoints(collectionName, points, DEFAULT_UPSERT_CHUNK_SIZE, DEFAULT_UPSERT_PARALLELISM);
+    }
+
+    private boolean upsertChunk(String collectionName, final List<Point> chunk) {
+        // {"points":[{"id":..,"vector":[..],"payload":{"reference":..,"theme":..,"text":..}}, ...]}
+        HttpTransport.Request request = newRequest("PUT", "/collections/" + collectionName + "/points?wait=true", 20000, 60000)
+                .body(out -> {
+                    QdrantJson.Writer writer = new QdrantJson.Writer(out);
+                    writer.raw("{\"points\":[");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Point point = chunk.get(i);
+                        if (i > 0) writer.raw(",");
+                        writer.raw("{\"id\":").number(point.id)
+                              .raw(",\"vector\":").vector(point.vector)
+                              .raw(",\"payload\":{\"reference\":").string(point.reference)
+                              .raw(",\"theme\":").string(point.theme)
+                              .raw(",\"text\":").string(point.text)
+                              .raw("}}");
+                    }
+                    writer.raw("]}");
+                    writer.flush();
+                });
+
+        try (HttpTransport.Response response = transport.execute(request)) {
+            int responseCode = response.code;
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                return true;
+            }
+            Log.e(TAG, "❌ Erreur upsert lot (" + chunk.size() + " points): " + responseCode);
+            return false;
+
         } catch (Exception e) {
-            Log.e(TAG, "❌ Erreur parsing résultats", e);
-            results.add(new SearchResult("Error parsing: " + e.getMessage(), 0.0f));
+            Log.e(TAG, "❌ Exception upsert lot", e);
+            return false;
         }
-        
-        return results;
+    }
+
+    /**
+     * Requête JSON vers `baseUrl + path`, avec la clé API si présente.
+     */
+    private HttpTransport.Request newRequest(String method, String path, int connectTimeoutMs, int readTimeoutMs) {
+        HttpTransport.Request request = new HttpTransport.Request(method, baseUrl + path)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .timeouts(connectTimeoutMs, readTimeoutMs);
+        if (apiKey != null && !apiKey.isEmpty()) {
+            request.header("api-key", apiKey);
+        }
+        return request;
+    }
+
+    /** Clé de regroupement: même instance Qdrant, collection, limite et vecteur (comparé élément par élément). */
+    private static final class SearchKey {
+        final String baseUrl;
+        final String collection;
+        final float[] vector;
+        final int limit;
+        final int hash;
+
+        SearchKey(String baseUrl, String collection, float[] vector, int limit) {
+            this.baseUrl = baseUrl;
+            this.collection = collection;
+            this.vector = vector.clone();
+            this.limit = limit;
+            this.hash = 31 * (31 * (31 * baseUrl.hashCode() + collection.hashCode()) + Arrays.hashCode(vector)) + limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SearchKey)) return false;
+            SearchKey other = (SearchKey) o;
+            return hash == other.hash && limit == other.limit && baseUrl.equals(other.baseUrl)
+                    && collection.equals(other.collection) && Arrays.equals(vector, other.vector);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static String getSearchStats() {
+        return SEARCH_FLIGHTS.getStats();
     }
 
     public static class SearchResult {
         public final String text;
         public final float score;
+        public final String reference;
 
         public SearchResult(String text, float score) {
+            this(text, score, "");
+        }
+
+        public SearchResult(String text, float score, String reference) {
             this.text = text;
             this.score = score;
+            this.reference = reference;
         }
 
         @Override
@@ -295,6 +454,76 @@ public class QdrantClient {
         }
     }
 
+    /**
+     * Point à indexer: vecteur + payload (référence du verset, thème, texte).
+     */
+    public static class Point {
+        /** Premiers identifiants réservés aux versets sans référence (au-delà de 114 * 1000) */
+        private static final long TEXT_ID_BASE = 1000000L;
+
+        public final long id;
+        public final float[] vector;
+        public final String reference;
+        public final String theme;
+        public final String text;
+
+        public Point(long id, float[] vector, String reference, String theme, String text) {
+            this.id = id;
+            this.vector = vector;
+            this.reference = reference;
+            this.theme = theme;
+            this.text = text;
+        }
+
+        /**
+         * Identifiant stable d'un verset, partagé par tous les services qui alimentent la collection:
+         * sourate * 1000 + verset pour une référence "s:v", sinon un hachage du texte au-delà de cette plage.
+         * Un même verset réécrit donc son propre point, jamais celui d'un autre.
+         */
+        public static long idFor(String reference, String text) {
+            if (reference != null) {
+                int colon = reference.indexOf(':');
+                if (colon > 0) {
+                    try {
+                        int surah = Integer.parseInt(reference.substring(0, colon).trim());
+                        int ayah = Integer.parseInt(reference.substring(colon + 1).trim());
+                        if (surah > 0 && ayah > 0 && ayah < 1000) return surah * 1000L + ayah;
+                    } catch (NumberFormatException e) {
+                        // Référence libre: hachage du texte
+                    }
+                }
+            }
+            return TEXT_ID_BASE + ((text != null ? text.hashCode() : 0) & 0x7fffffffL);
+        }
+    }
+
+    /**
+     * Bilan d'une ingestion: points stockés, lots en échec, durée et débit.
+     */
+    public static class UpsertReport {
+        public final int points;
+        public final int chunks;
+        public final int failedChunks;
+        public final long elapsedMs;
+
+        public UpsertReport(int points, int chunks, int failedChunks, long elapsedMs) {
+            this.points = points;
+            this.chunks = chunks;
+            this.failedChunks = failedChunks;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double getPointsPerSecond() {
+            return elapsedMs > 0 ? points * 1000.0 / elapsedMs : points;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Upsert: %d points, %d/%d lots OK en %d ms (%.0f points/s)",
+                    points, chunks - failedChunks, chunks, elapsedMs, getPointsPerSecond());
+        }
+    }
+
     public String getCurrentMode() {
         return isConfigured() ? "RÉEL (Qdrant API)" : "DÉMO";
     }
@@ -0,0 +1,520 @@
+package com.besmainfo.biprayer.ai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * JSON en flux pour les requêtes Qdrant, sans arbre intermédiaire:
+ * - Writer écrit directement les octets (floats compris, sans boxing) dans le flux de la connexion;
+ * - Reader est un parseur "pull" qui ne décode que score, payload.text et payload.reference,
+ *   le reste de la réponse est sauté octet par octet.
+ *
+ * Les tampons sont réutilisés par thread: une recherche n'alloue plus que ses résultats.
+ */
+public final class QdrantJson {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private static final byte[] KEY_RESULT = ascii("result");
+    private static final byte[] KEY_SCORE = ascii("score");
+    private static final byte[] KEY_PAYLOAD = ascii("payload");
+    private static final byte[] KEY_TEXT = ascii("text");
+    private static final byte[] KEY_REFERENCE = ascii("reference");
+    private static final byte[][] RESPONSE_KEYS = {KEY_RESULT};
+    private static final byte[][] HIT_KEYS = {KEY_SCORE, KEY_PAYLOAD};
+    private static final byte[][] PAYLOAD_KEYS = {KEY_TEXT, KEY_REFERENCE};
+
+    private static final ThreadLocal<byte[]> WRITE_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<StringBuilder> STRING_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /**
+     * Reçoit chaque résultat décodé; `query` = rang de la requête (toujours 0 hors recherche groupée).
+     */
+    public interface HitListener {
+        void onHit(int query, float score, String text, String reference);
+    }
+
+    private QdrantJson() {
+    }
+
+    // ============================================================
+    //  REQUÊTES
+    // ============================================================
+
+    /**
+     * {"vector":[...],"limit":n,"with_payload":true,"with_vector":false,"score_threshold":t}
+     */
+    public static void writeSearch(OutputStream out, float[] vector, int limit, float scoreThreshold) throws IOException {
+        Writer writer = new Writer(out);
+        writeSearchBody(writer, vector, limit, scoreThreshold);
+        writer.flush();
+    }
+
+    /**
+     * {"searches":[{...}, {...}]} pour /points/search/batch.
+     */
+    public static void writeSearchBatch(OutputStream out, List<float[]> vectors, int limit, float scoreThreshold) throws IOException {
+        Writer writer = new Writer(out);
+        writer.raw("{\"searches\":[");
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i > 0) writer.raw(",");
+            writeSearchBody(writer, vectors.get(i), limit, scoreThreshold);
+        }
+        writer.raw("]}");
+        writer.flush();
+    }
+
+    private static void writeSearchBody(Writer writer, float[] vector, int limit, float scoreThreshold) throws IOException {
+        writer.raw("{\"vector\":").vector(vector)
+              .raw(",\"limit\":").number(limit)
+              .raw(",\"with_payload\":true,\"with_vector\":false,\"score_threshold\":").number(scoreThreshold)
+              .raw("}");
+    }
+
+    /**
+     * Écriture JSON bas niveau vers un flux (non thread-safe, une instance par requête).
+     * raw() écrit du JSON déjà formé en ASCII; string() échappe et encode en UTF-8.
+     */
+    public static final class Writer {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position = 0;
+
+        public Writer(OutputStream out) {
+            this.out = out;
+            this.buffer = WRITE_BUFFER.get();
+        }
+
+        public Writer raw(String json) throws IOException {
+            for (int i = 0; i < json.length(); i++) {
+                put((byte) json.charAt(i));
+            }
+            return this;
+        }
+
+        public Writer vector(float[] vector) throws IOException {
+            put((byte) '[');
+            for (int i = 0; i < vector.length; i++) {
+                if (i > 0) put((byte) ',');
+                number(vector[i]);
+            }
+            put((byte) ']');
+            return this;
+        }
+
+        public Writer number(long value) throws IOException {
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            long divisor = 1;
+            while (value / divisor >= 10) divisor *= 10;
+            for (; divisor > 0; divisor /= 10) {
+                put(DIGITS[(int) (value / divisor % 10)]);
+            }
+            return this;
+        }
+
+        /**
+         * 9 chiffres significatifs: assez pour qu'un float relu redonne exactement le même float
+         * (vecteurs identiques à ceux de l'index local), notation "d.ddddddddE-x" si besoin.
+         */
+        public Writer number(float value) throws IOException {
+            if (value == 0f || Float.isNaN(value) || Float.isInfinite(value)) {
+                put((byte) '0');
+                return this;
+            }
+            double v = value;
+            if (v < 0) {
+                put((byte) '-');
+                v = -v;
+            }
+
+            int exponent = (int) Math.floor(Math.log10(v));
+            long digits = Math.round(v / Math.pow(10, exponent - 8));
+            if (digits >= 1000000000L) {
+                exponent++;
+                digits = Math.round(v / Math.pow(10, exponent - 8));
+            } else if (digits < 100000000L) {
+                exponent--;
+                digits = Math.round(v / Math.pow(10, exponent - 8));
+            }
+
+            put(DIGITS[(int) (digits / 100000000L)]);
+            int fraction = (int) (digits % 100000000L);
+            if (fraction != 0) {
+                put((byte) '.');
+                int divisor = 10000000;
+                while (fraction != 0) {
+                    put(DIGITS[fraction / divisor]);
+                    fraction %= divisor;
+                    divisor /= 10;
+                }
+            }
+            if (exponent != 0) {
+                put((byte) 'E');
+                number((long) exponent);
+            }
+            return this;
+        }
+
+        public Writer string(String value) throws IOException {
+            put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    put((byte) '\\');
+                    put((byte) c);
+                } else if (c < 0x20) {
+                    put((byte) '\\');
+                    put((byte) 'u');
+                    put((byte) '0');
+                    put((byte) '0');
+                    put(HEX[c >> 4]);
+                    put(HEX[c & 0xF]);
+                } else if (c < 0x80) {
+                    put((byte) c);
+                } else if (c < 0x800) {
+                    put((byte) (0xC0 | (c >> 6)));
+                    put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    put((byte) (0xF0 | (codePoint >> 18)));
+                    put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    put((byte) (0xE0 | (c >> 12)));
+                    put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            put((byte) '"');
+            return this;
+        }
+
+        public void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+
+        private void put(byte b) throws IOException {
+            if (position == buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            buffer[position++] = b;
+        }
+    }
+
+    // ============================================================
+    //  RÉPONSES
+    // ============================================================
+
+    /**
+     * Réponse de /points/search: {"result":[{"id":..,"score":..,"payload":{..}}, ...], ...}
+     */
+    public static void readSearchResults(InputStream in, HitListener listener) throws IOException {
+        readResponse(new Reader(in), listener, false);
+    }
+
+    /**
+     * Réponse de /points/search/batch: {"result":[[...], [...]], ...}
+     */
+    public static void readBatchResults(InputStream in, HitListener listener) throws IOException {
+        readResponse(new Reader(in), listener, true);
+    }
+
+    private static void readResponse(Reader reader, HitListener listener, boolean batch) throws IOException {
+        reader.expect('{');
+        while (reader.hasNext()) {
+            if (reader.nextName(RESPONSE_KEYS) == 0) {
+                readResult(reader, listener, batch);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.expect('}');
+    }
+
+    private static void readResult(Reader reader, HitListener listener, boolean batch) throws IOException {
+        if (reader.peek() == '{') {
+            // Enveloppe imbriquée {"result":{"result":[...]}}
+            readResponse(reader, listener, batch);
+            return;
+        }
+
+        reader.expect('[');
+        int query = 0;
+        while (reader.hasNext()) {
+            if (batch) {
+                reader.expect('[');
+                while (reader.hasNext()) readHit(reader, listener, query);
+                reader.expect(']');
+                query++;
+            } else {
+                readHit(reader, listener, 0);
+            }
+        }
+        reader.expect(']');
+    }
+
+    private static void readHit(Reader reader, HitListener listener, int query) throws IOException {
+        float score = 0f;
+        String text = "No text";
+        String reference = "";
+
+        reader.expect('{');
+        while (reader.hasNext()) {
+            int key = reader.nextName(HIT_KEYS);
+            if (key == 0) {
+                score = (float) reader.nextNumber();
+            } else if (key == 1 && reader.peek() == '{') {
+                reader.expect('{');
+                while (reader.hasNext()) {
+                    int field = reader.nextName(PAYLOAD_KEYS);
+                    if (field >= 0 && reader.peek() == '"') {
+                        String value = reader.nextString();
+                        if (field == 0) text = value; else reference = value;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.expect('}');
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.expect('}');
+        listener.onHit(query, score, text, reference);
+    }
+
+    /**
+     * Lecteur JSON octet par octet (UTF-8), tolérant sur les virgules.
+     */
+    static final class Reader {
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position = 0;
+        private int limit = 0;
+
+        Reader(InputStream in) {
+            this.in = in;
+            this.buffer = READ_BUFFER.get();
+        }
+
+        /** Prochain octet significatif (sans le consommer), -1 en fin de flux. */
+        int peek() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) return -1;
+                byte b = buffer[position];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+                position++;
+            }
+        }
+
+        void expect(char c) throws IOException {
+            int b = peek();
+            if (b != c) throw new IOException("JSON invalide: '" + c + "' attendu, trouvé " + (b < 0 ? "fin" : "'" + (char) b + "'"));
+            position++;
+        }
+
+        /** Vrai s'il reste un élément dans l'objet/tableau courant (consomme la virgule). */
+        boolean hasNext() throws IOException {
+            int b = peek();
+            if (b == ',') {
+                position++;
+                b = peek();
+            }
+            return b != '}' && b != ']' && b != -1;
+        }
+
+        /**
+         * Lit un nom de membre et le ':' qui suit; retourne l'indice de la clé correspondante, -1 sinon.
+         * Comparaison sur les octets, sans créer de String.
+         */
+        int nextName(byte[][] keys) throws IOException {
+            expect('"');
+            int matched = -1;
+            long candidates = (1L << keys.length) - 1;
+            int length = 0;
+
+            while (true) {
+                int b = read();
+                if (b < 0) throw new IOException("JSON invalide: nom non terminé");
+                if (b == '"') break;
+                if (b == '\\') {
+                    read();
+                    candidates = 0;
+                }
+                for (int k = 0; k < keys.length; k++) {
+                    if ((candidates & (1L << k)) != 0 && (length >= keys[k].length || keys[k][length] != (byte) b)) {
+                        candidates &= ~(1L << k);
+                    }
+                }
+                length++;
+            }
+            for (int k = 0; k < keys.length; k++) {
+                if ((candidates & (1L << k)) != 0 && keys[k].length == length) {
+                    matched = k;
+                    break;
+                }
+            }
+            expect(':');
+            return matched;
+        }
+
+        String nextString() throws IOException {
+            expect('"');
+            StringBuilder out = STRING_BUFFER.get();
+            out.setLength(0);
+
+            while (true) {
+                int b = read();
+                if (b < 0) throw new IOException("JSON invalide: chaîne non terminée");
+                if (b == '"') break;
+                if (b == '\\') {
+                    int escaped = read();
+                    switch (escaped) {
+                        case 'n': out.append('\n'); break;
+                        case 't': out.append('\t'); break;
+                        case 'r': out.append('\r'); break;
+                        case 'b': out.append('\b'); break;
+                        case 'f': out.append('\f'); break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) code = (code << 4) | Character.digit(read(), 16);
+                            out.append((char) code);
+                            break;
+                        default: out.append((char) escaped);
+                    }
+                } else if (b < 0x80) {
+                    out.append((char) b);
+                } else if (b < 0xE0) {
+                    out.append((char) (((b & 0x1F) << 6) | (read() & 0x3F)));
+                } else if (b < 0xF0) {
+                    out.append((char) (((b & 0x0F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F)));
+                } else {
+                    int codePoint = ((b & 0x07) << 18) | ((read() & 0x3F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F);
+                    out.appendCodePoint(codePoint);
+                }
+            }
+            return out.toString();
+        }
+
+        double nextNumber() throws IOException {
+            peek();
+            boolean negative = false;
+            long mantissa = 0;
+            int scale = 0;
+            int digits = 0;
+            boolean fraction = false;
+
+            int b = read();
+            if (b == '-') {
+                negative = true;
+                b = read();
+            }
+            for (; ; b = read()) {
+                if (b >= '0' && b <= '9') {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (mantissa != 0) digits++;
+                        if (fraction) scale--;
+                    } else if (!fraction) {
+                        scale++;
+                    }
+                } else if (b == '.') {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (b == 'e' || b == 'E') {
+                boolean negativeExponent = false;
+                int exponent = 0;
+                b = read();
+                if (b == '-' || b == '+') {
+                    negativeExponent = b == '-';
+                    b = read();
+                }
+                for (; b >= '0' && b <= '9'; b = read()) exponent = exponent * 10 + (b - '0');
+                scale += negativeExponent ? -exponent : exponent;
+            }
+            if (b >= 0) position--;
+
+            double value = scale == 0 ? mantissa : mantissa * Math.pow(10, scale);
+            return negative ? -value : value;
+        }
+
+        void skipValue() throws IOException {
+            int b = peek();
+            if (b == '"') {
+                position++;
+                skipStringBody();
+            } else if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    b = read();
+                    if (b == '"') skipStringBody();
+                    else if (b == '{' || b == '[') depth++;
+                    else if (b == '}' || b == ']') depth--;
+                } while (depth > 0 && b >= 0);
+            } else {
+                while ((b = read()) >= 0) {
+                    if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                        position--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void skipStringBody() throws IOException {
+            int b;
+            while ((b = read()) >= 0 && b != '"') {
+                if (b == '\\') read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position++] & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            int count = in.read(buffer, 0, buffer.length);
+            if (count <= 0) return false;
+            position = 0;
+            limit = count;
+            return true;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) value.charAt(i);
+        return bytes;
+    }
+}
@@ -0,0 +1,391 @@
+package com.besmainfo.biprayer.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stockage compressé des embeddings (similarité cosinus) avec recherche par distance
+ * asymétrique (ADC): la requête reste en float, seuls les vecteurs stockés sont quantifiés.
+ *
+ * - SCALAR_INT8: 1 octet par dimension (min/pas appris par dimension), 4x moins que float.
+ * - PRODUCT: quantification produit, 1 octet par sous-espace de 8 dimensions, 32x moins.
+ *
+ * Les premiers vecteurs servent à l'apprentissage (au plus TRAINING_SIZE) puis sont encodés;
+ * d'ici là, ils restent en float et la recherche est exacte.
+ * Option rerank: les meilleurs candidats sont rescorés avec une représentation plus fine,
+ * les floats en SCALAR_INT8 (score exact), des codes int8 en PRODUCT (reste ~3.5x plus compact).
+ */
+public class QuantizedVectorStore {
+    public enum Mode { SCALAR_INT8, PRODUCT }
+
+    public static final int TRAINING_SIZE = 4096;
+    public static final int PQ_SUBVECTOR_DIMENSION = 8;
+    public static final int RERANK_FACTOR = 10;
+    private static final int PQ_CENTROIDS = 256;
+    private static final int KMEANS_ITERATIONS = 10;
+    private static final float WEIGHT_RANGE = 4096f;
+
+    private final int dimension;
+    private final Mode mode;
+    private final boolean rerank;
+    private final List<float[]> pending = new ArrayList<>();
+    private final QuantizedVectorStore refine;
+
+    private boolean trained = false;
+    private int size = 0;
+    private byte[] codes = new byte[0];
+    private float[] floats = new float[0];
+
+    // SCALAR_INT8: valeur = min[d] + code * step[d]
+    private float[] min;
+    private float[] step;
+
+    // PRODUCT: centroids[sous-espace][centroïde * PQ_SUBVECTOR_DIMENSION + d]
+    private float[][] centroids;
+    private int pqCentroidCount = PQ_CENTROIDS;
+
+    public QuantizedVectorStore(int dimension, Mode mode, boolean rerank) {
+        if (mode == Mode.PRODUCT && dimension % PQ_SUBVECTOR_DIMENSION != 0) {
+            throw new IllegalArgumentException("Dimension non divisible par " + PQ_SUBVECTOR_DIMENSION);
+        }
+        this.dimension = dimension;
+        this.mode = mode;
+        this.rerank = rerank;
+        this.refine = rerank && mode == Mode.PRODUCT ? new QuantizedVectorStore(dimension, Mode.SCALAR_INT8, false) : null;
+    }
+
+    public Mode getMode() { return mode; }
+    public boolean isRerankEnabled() { return rerank; }
+
+    public synchronized int size() {
+        return size + pending.size();
+    }
+
+    /**
+     * Ajoute un vecteur (normalisé) et retourne son identifiant séquentiel.
+     */
+    public synchronized int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Dimension " + vector.length + " au lieu de " + dimension);
+        }
+        float[] copy = Arrays.copyOf(vector, dimension);
+        HnswIndex.normalize(copy, 0, dimension);
+        if (refine != null) refine.add(copy);
+
+        if (!trained) {
+            pending.add(copy);
+            if (pending.size() >= TRAINING_SIZE) train();
+            return size + pending.size() - 1;
+        }
+        return encode(copy);
+    }
+
+    public HnswIndex.Hits search(float[] query, int k) {
+        return search(query, k, rerank ? k * RERANK_FACTOR : k);
+    }
+
+    /**
+     * Parcours ADC de tous les codes; avec rerank, les `candidates` meilleurs sont rescorés.
+     */
+    public synchronized HnswIndex.Hits search(float[] query, int k, int candidates) {
+        if (size + pending.size() == 0 || k <= 0) return new HnswIndex.Hits(new int[0], new float[0]);
+
+        float[] q = Arrays.copyOf(query, dimension);
+        HnswIndex.normalize(q, 0, dimension);
+
+        // Pas encore TRAINING_SIZE vecteurs: un codebook appris sur un petit échantillon serait figé
+        // (PQ à k = n centroïdes, min/max int8 trop étroits); recherche exacte sur les floats en attente
+        if (!trained) return exactPendingSearch(q, k);
+
+        int keep = rerank ? Math.max(k, candidates) : k;
+        HnswIndex.ScoreHeap heap = new HnswIndex.ScoreHeap(false, keep + 1);
+
+        if (mode == Mode.SCALAR_INT8) {
+            ScalarQuery scalar = new ScalarQuery(q);
+            for (int id = 0; id < size; id++) {
+                offer(heap, keep, id, scalar.score(id * dimension));
+            }
+        } else {
+            int subspaces = dimension / PQ_SUBVECTOR_DIMENSION;
+            float[] table = distanceTable(q, subspaces);
+            for (int id = 0; id < size; id++) {
+                float score = 0f;
+                int base = id * subspaces;
+                for (int s = 0; s < subspaces; s++) {
+                    score += table[s * PQ_CENTROIDS + (codes[base + s] & 0xFF)];
+                }
+                offer(heap, keep, id, score);
+            }
+        }
+
+        if (!rerank) return heap.toHits();
+
+        HnswIndex.ScoreHeap finer = new HnswIndex.ScoreHeap(false, k + 1);
+        ScalarQuery scalar = refine != null ? refine.prepareScalarQuery(q) : null;
+        while (heap.size() > 0) {
+            int id = heap.pop();
+            float score = scalar != null
+                    ? scalar.score(id * dimension)
+                    : HnswIndex.dot(q, 0, floats, id * dimension, dimension);
+            offer(finer, k, id, score);
+        }
+        return finer.toHits();
+    }
+
+    private HnswIndex.Hits exactPendingSearch(float[] q, int k) {
+        HnswIndex.ScoreHeap heap = new HnswIndex.ScoreHeap(false, k + 1);
+        for (int id = 0; id < pending.size(); id++) {
+            offer(heap, k, id, HnswIndex.dot(q, 0, pending.get(id), 0, dimension));
+        }
+        return heap.toHits();
+    }
+
+    /**
+     * Rappel@k moyen par rapport à des résultats exacts de référence (ex. HnswIndex.exactSearch).
+     */
+    public double measureRecall(float[][] queries, int[][] exactIds, int k) {
+        double recall = 0;
+        for (int i = 0; i < queries.length; i++) {
+            int[] found = search(queries[i], k).ids;
+            int hits = 0;
+            for (int id : found) {
+                for (int expected : exactIds[i]) {
+                    if (id == expected) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            recall += hits / (double) k;
+        }
+        return recall / queries.length;
+    }
+
+    /**
+     * Octets utilisés par les vecteurs (codes + floats conservés + tables de quantification).
+     */
+    public synchronized long getMemoryBytes() {
+        long bytes = (long) size * bytesPerCode();
+        if (refine != null) {
+            bytes += refine.getMemoryBytes();
+        } else if (rerank) {
+            bytes += (long) size * dimension * 4;
+        }
+        if (min != null) bytes += 2L * dimension * 4;
+        if (centroids != null) bytes += (long) centroids.length * centroids[0].length * 4;
+        return bytes + (long) pending.size() * dimension * 4;
+    }
+
+    public synchronized long getFloatEquivalentBytes() {
+        return (long) size() * dimension * 4;
+    }
+
+    public String getMemoryReport() {
+        long used = getMemoryBytes();
+        long full = getFloatEquivalentBytes();
+        return String.format(java.util.Locale.ROOT, "%s%s: %d Ko au lieu de %d Ko (%.1fx, %d%% économisés)",
+                mode, rerank ? "+rerank" : "", used / 1024, full / 1024,
+                used == 0 ? 0.0 : (double) full / used,
+                full == 0 ? 0 : (int) (100 - used * 100 / full));
+    }
+
+    // ============================================================
+    //  APPRENTISSAGE ET ENCODAGE
+    // ============================================================
+
+    private void train() {
+        if (pending.isEmpty()) return;
+
+        float[][] sample = pending.toArray(new float[0][]);
+        if (mode == Mode.SCALAR_INT8) {
+            trainScalar(sample);
+        } else {
+            trainProduct(sample);
+        }
+        trained = true;
+
+        for (float[] vector : sample) {
+            encode(vector);
+        }
+        pending.clear();
+    }
+
+    private void trainScalar(float[][] sample) {
+        min = new float[dimension];
+        step = new float[dimension];
+        Arrays.fill(min, Float.MAX_VALUE);
+        float[] max = new float[dimension];
+        Arrays.fill(max, -Float.MAX_VALUE);
+
+        for (float[] v : sample) {
+            for (int d = 0; d < dimension; d++) {
+                min[d] = Math.min(min[d], v[d]);
+                max[d] = Math.max(max[d], v[d]);
+            }
+        }
+        for (int d = 0; d < dimension; d++) {
+            float range = max[d] - min[d];
+            step[d] = range > 0f ? range / 255f : 1f;
+        }
+    }
+
+    /**
+     * k-means indépendant par sous-espace (initialisation sur des vecteurs tirés au hasard).
+     */
+    private void trainProduct(float[][] sample) {
+        int subspaces = dimension / PQ_SUBVECTOR_DIMENSION;
+        int k = Math.min(PQ_CENTROIDS, sample.length);
+        Random random = new Random(7);
+        centroids = new float[subspaces][PQ_CENTROIDS * PQ_SUBVECTOR_DIMENSION];
+        int[] assignment = new int[sample.length];
+
+        for (int s = 0; s < subspaces; s++) {
+            int offset = s * PQ_SUBVECTOR_DIMENSION;
+            float[] book = centroids[s];
+
+            for (int c = 0; c < PQ_CENTROIDS; c++) {
+                float[] seed = sample[c < k ? random.nextInt(sample.length) : c % sample.length];
+                System.arraycopy(seed, offset, book, c * PQ_SUBVECTOR_DIMENSION, PQ_SUBVECTOR_DIMENSION);
+            }
+
+            for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+                for (int i = 0; i < sample.length; i++) {
+                    assignment[i] = nearestCentroid(book, k, sample[i], offset);
+                }
+
+                float[] sums = new float[k * PQ_SUBVECTOR_DIMENSION];
+                int[] counts = new int[k];
+                for (int i = 0; i < sample.length; i++) {
+                    int c = assignment[i];
+                    counts[c]++;
+                    for (int d = 0; d < PQ_SUBVECTOR_DIMENSION; d++) {
+                        sums[c * PQ_SUBVECTOR_DIMENSION + d] += sample[i][offset + d];
+                    }
+                }
+                for (int c = 0; c < k; c++) {
+                    if (counts[c] == 0) continue;
+                    for (int d = 0; d < PQ_SUBVECTOR_DIMENSION; d++) {
+                        book[c * PQ_SUBVECTOR_DIMENSION + d] = sums[c * PQ_SUBVECTOR_DIMENSION + d] / counts[c];
+                    }
+                }
+            }
+        }
+        pqCentroidCount = k;
+    }
+
+    private int encode(float[] vector) {
+        int id = size;
+        int codeSize = bytesPerCode();
+        if ((id + 1) * codeSize > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max((id + 1) * codeSize, codes.length * 2));
+        }
+        if (rerank && refine == null && (id + 1) * dimension > floats.length) {
+            floats = Arrays.copyOf(floats, Math.max((id + 1) * dimension, floats.length * 2));
+        }
+
+        if (mode == Mode.SCALAR_INT8) {
+            for (int d = 0; d < dimension; d++) {
+                int code = Math.round((vector[d] - min[d]) / step[d]);
+                codes[id * dimension + d] = (byte) Math.max(0, Math.min(255, code));
+            }
+        } else {
+            int subspaces = dimension / PQ_SUBVECTOR_DIMENSION;
+            for (int s = 0; s < subspaces; s++) {
+                codes[id * subspaces + s] = (byte) nearestCentroid(centroids[s], pqCentroidCount,
+                        vector, s * PQ_SUBVECTOR_DIMENSION);
+            }
+        }
+        if (rerank && refine == null) System.arraycopy(vector, 0, floats, id * dimension, dimension);
+
+        size++;
+        return id;
+    }
+
+    private int bytesPerCode() {
+        return mode == Mode.SCALAR_INT8 ? dimension : dimension / PQ_SUBVECTOR_DIMENSION;
+    }
+
+    // ============================================================
+    //  DISTANCES
+    // ============================================================
+
+    private synchronized ScalarQuery prepareScalarQuery(float[] q) {
+        if (!trained) train();
+        return new ScalarQuery(q);
+    }
+
+    /**
+     * Requête préparée pour SCALAR_INT8: score = biais + somme(poids[d] * code[d]).
+     * Les poids sont ramenés en entiers (12 bits) pour que la boucle reste en arithmétique entière,
+     * vectorisable par le JIT; la somme tient dans un int (384 * 255 * 4096 < 2^31).
+     */
+    private final class ScalarQuery {
+        private final int[] weights = new int[dimension];
+        private final float bias;
+        private final float unit;
+
+        ScalarQuery(float[] q) {
+            float bias = 0f;
+            float largest = 0f;
+            for (int d = 0; d < dimension; d++) {
+                bias += q[d] * min[d];
+                largest = Math.max(largest, Math.abs(q[d] * step[d]));
+            }
+            float scale = largest > 0f ? WEIGHT_RANGE / largest : 1f;
+            for (int d = 0; d < dimension; d++) {
+                weights[d] = Math.round(q[d] * step[d] * scale);
+            }
+            this.bias = bias;
+            this.unit = 1f / scale;
+        }
+
+        float score(int offset) {
+            int sum = 0;
+            for (int d = 0; d < dimension; d++) {
+                sum += weights[d] * (codes[offset + d] & 0xFF);
+            }
+            return bias + sum * unit;
+        }
+    }
+
+    /**
+     * Table ADC: produit scalaire de chaque sous-vecteur de la requête avec chaque centroïde.
+     */
+    private float[] distanceTable(float[] q, int subspaces) {
+        float[] table = new float[subspaces * PQ_CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[] book = centroids[s];
+            for (int c = 0; c < pqCentroidCount; c++) {
+                table[s * PQ_CENTROIDS + c] = HnswIndex.dot(q, s * PQ_SUBVECTOR_DIMENSION,
+                        book, c * PQ_SUBVECTOR_DIMENSION, PQ_SUBVECTOR_DIMENSION);
+            }
+        }
+        return table;
+    }
+
+    private static int nearestCentroid(float[] book, int k, float[] vector, int offset) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float distance = 0f;
+            for (int d = 0; d < PQ_SUBVECTOR_DIMENSION; d++) {
+                float diff = vector[offset + d] - book[c * PQ_SUBVECTOR_DIMENSION + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void offer(HnswIndex.ScoreHeap heap, int keep, int id, float score) {
+        if (heap.size() < keep || score > heap.peekScore()) {
+            heap.push(id, score);
+            if (heap.size() > keep) heap.pop();
+        }
+    }
+}
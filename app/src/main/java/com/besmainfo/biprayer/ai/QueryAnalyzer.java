@@ -0,0 +1,252 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+import com.besmainfo.biprayer.utils.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compréhension locale de la requête, sans appel réseau:
+ * normalisation, mots vides (fr/en/ar), racinisation légère, puis lexique des thèmes
+ * (thèmes du corpus + synonymes fr/en/ar) pour en tirer des termes pondérés.
+ * Gemini n'est utile que si la confiance locale est faible (isConfident() == false).
+ */
+public final class QueryAnalyzer {
+    private static final String TAG = "QueryAnalyzer";
+
+    /** Part minimale des mots porteurs de sens reconnus par le lexique */
+    private static final double MIN_CONFIDENCE = 0.5;
+    private static final double THEME_WEIGHT = 1.0;
+    private static final double SYNONYM_WEIGHT = 0.8;
+    private static final double UNKNOWN_TERM_WEIGHT = 0.3;
+
+    // Thème, puis ses synonymes en français, anglais et arabe (normalisés et racinisés au chargement)
+    private static final String[][] SYNONYMS = {
+        {"patience", "patient", "persévérance", "endurance", "épreuve", "difficulté", "supporter", "endurer",
+                "steadfast", "persevere", "hardship", "trial", "endure",
+                "صبر", "صابر", "ابتلاء", "محنة", "شدة"},
+        {"gratitude", "reconnaissance", "reconnaissant", "remercier", "merci", "bienfait", "louange",
+                "grateful", "thankful", "thanks", "blessing", "praise",
+                "شكر", "شاكر", "حمد", "نعمة"},
+        {"espoir", "espérance", "désespoir", "miséricorde", "tristesse", "triste", "angoisse", "peur", "consolation",
+                "hope", "despair", "mercy", "sadness", "sad", "anxiety", "fear", "comfort",
+                "رجاء", "أمل", "يأس", "رحمة", "حزن", "خوف"},
+        {"priere", "prière", "salat", "salah", "prosternation", "invocation", "adoration", "recueillement",
+                "prayer", "pray", "worship", "supplication", "prostration",
+                "صلاة", "دعاء", "سجود", "عبادة"},
+        {"sagesse", "science", "savoir", "connaissance", "apprendre", "comprendre", "réflexion",
+                "wisdom", "knowledge", "learn", "understanding", "reflection",
+                "حكمة", "علم", "معرفة", "تفكر"},
+        {"pardon", "repentir", "repentance", "péché", "faute", "excuser", "pardonner", "regret",
+                "forgiveness", "forgive", "repent", "sin",
+                "مغفرة", "توبة", "ذنب", "عفو", "استغفار"}
+    };
+
+    private static final String[] STOPWORDS = {
+        // français
+        "le", "la", "les", "un", "une", "des", "de", "du", "et", "ou", "au", "aux", "en", "dans", "pour", "par",
+        "sur", "avec", "sans", "ce", "cet", "cette", "ces", "mon", "ma", "mes", "ton", "ta", "tes", "son", "sa",
+        "ses", "je", "tu", "il", "elle", "nous", "vous", "ils", "elles", "me", "te", "se", "qui", "que", "quoi",
+        "comment", "pourquoi", "quand", "quel", "quelle", "quels", "quelles", "est", "suis", "sont", "etre",
+        "avoir", "ai", "as", "comme", "plus", "pas", "ne", "leur", "mais", "donc", "tres", "moi", "toi",
+        "parle", "parlent", "verset", "versets", "coran", "sourate", "besoin",
+        // anglais
+        "the", "an", "of", "to", "in", "on", "for", "with", "and", "or", "is", "are", "am", "be", "my", "you",
+        "your", "he", "she", "it", "we", "they", "what", "how", "why", "when", "which", "about", "do", "does",
+        "need", "me", "verse", "verses", "quran", "surah", "some",
+        // arabe
+        "في", "من", "على", "الى", "إلى", "عن", "مع", "ما", "ماذا", "كيف", "لماذا", "هل", "انا", "أنا", "انت",
+        "هو", "هي", "نحن", "هذا", "هذه", "الذي", "التي", "ثم", "او", "أو", "آية", "قرآن", "سورة"
+    };
+
+    private static final String[] LATIN_SUFFIXES = {
+        "issements", "issement", "ements", "ement", "ations", "ation", "ances", "ance", "ences", "ence",
+        "euses", "euse", "eux", "ives", "ive", "ness", "ful", "ing", "ants", "ant", "ed", "es", "s", "e"
+    };
+    private static final String[] ARABIC_PREFIXES = {"وال", "بال", "كال", "فال", "لل", "ال", "و", "ف", "ب"};
+    private static final String[] ARABIC_SUFFIXES = {"ها", "هم", "ات", "ون", "ين", "ه", "ي"};
+
+    private final Map<String, Map<String, Double>> lexicon = new HashMap<>();
+    private final Set<String> stopwords = new HashSet<>();
+
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong resolvedLocally = new AtomicLong();
+
+    /**
+     * @param themes thèmes connus du corpus (QuranService.getThemes()), ajoutés au lexique intégré
+     */
+    public QueryAnalyzer(Collection<String> themes) {
+        for (String word : STOPWORDS) {
+            stopwords.add(TextNormalizer.normalize(word));
+        }
+        for (String[] row : SYNONYMS) {
+            String theme = row[0];
+            addTerm(theme, theme, THEME_WEIGHT);
+            for (int i = 1; i < row.length; i++) {
+                addTerm(row[i], theme, SYNONYM_WEIGHT);
+            }
+        }
+        for (String theme : themes) {
+            addTerm(theme, theme, THEME_WEIGHT);
+        }
+    }
+
+    private void addTerm(String word, String theme, double weight) {
+        for (String token : TextNormalizer.tokenize(word)) {
+            String stem = stem(token);
+            Map<String, Double> themes = lexicon.get(stem);
+            if (themes == null) {
+                themes = new LinkedHashMap<>(2);
+                lexicon.put(stem, themes);
+            }
+            Double current = themes.get(theme);
+            if (current == null || current < weight) {
+                themes.put(theme, weight);
+            }
+        }
+    }
+
+    /** Racinisation légère: suffixes latins courants, préfixes et suffixes arabes fréquents. */
+    static String stem(String token) {
+        if (token.isEmpty()) return token;
+        char first = token.charAt(0);
+        if (first >= '؀' && first <= 'ۿ') {
+            String stem = token;
+            for (String prefix : ARABIC_PREFIXES) {
+                if (stem.startsWith(prefix) && stem.length() - prefix.length() >= 3) {
+                    stem = stem.substring(prefix.length());
+                    break;
+                }
+            }
+            for (String suffix : ARABIC_SUFFIXES) {
+                if (stem.endsWith(suffix) && stem.length() - suffix.length() >= 3) {
+                    return stem.substring(0, stem.length() - suffix.length());
+                }
+            }
+            return stem;
+        }
+        for (String suffix : LATIN_SUFFIXES) {
+            if (token.endsWith(suffix) && token.length() - suffix.length() >= 4) {
+                return token.substring(0, token.length() - suffix.length());
+            }
+        }
+        return token;
+    }
+
+    /** Analyse locale, sans allocation de structure lourde: quelques µs pour une requête courante. */
+    public Analysis analyze(String query) {
+        long start = System.nanoTime();
+        Map<String, Double> themeScores = new LinkedHashMap<>();
+        List<String> unknown = new ArrayList<>();
+        int contentWords = 0;
+        int recognized = 0;
+
+        for (String token : TextNormalizer.tokenize(query)) {
+            if (stopwords.contains(token)) continue;
+            contentWords++;
+            Map<String, Double> themes = lexicon.get(stem(token));
+            if (themes == null) {
+                unknown.add(token);
+                continue;
+            }
+            recognized++;
+            for (Map.Entry<String, Double> entry : themes.entrySet()) {
+                Double score = themeScores.get(entry.getKey());
+                themeScores.put(entry.getKey(), (score != null ? score : 0) + entry.getValue());
+            }
+        }
+
+        List<Term> terms = new ArrayList<>(themeScores.size() + unknown.size());
+        for (Map.Entry<String, Double> entry : themeScores.entrySet()) {
+            terms.add(new Term(entry.getKey(), entry.getValue()));
+        }
+        for (String token : unknown) {
+            terms.add(new Term(token, UNKNOWN_TERM_WEIGHT));
+        }
+        Collections.sort(terms, new Comparator<Term>() {
+            @Override
+            public int compare(Term a, Term b) {
+                return Double.compare(b.weight, a.weight);
+            }
+        });
+
+        double confidence = contentWords > 0 ? (double) recognized / contentWords : 0;
+        Analysis analysis = new Analysis(terms, new ArrayList<>(themeScores.keySet()), confidence,
+                                         (System.nanoTime() - start) / 1000);
+
+        long total = analyzed.incrementAndGet();
+        long local = analysis.isConfident() ? resolvedLocally.incrementAndGet() : resolvedLocally.get();
+        Log.d(TAG, "🧠 " + analysis + " - Gemini évité " + local + "/" + total
+                + String.format(Locale.US, " (%.0f%%)", 100.0 * local / total));
+        return analysis;
+    }
+
+    public String getStats() {
+        long total = analyzed.get();
+        long local = resolvedLocally.get();
+        return String.format(Locale.US, "Analyse de requêtes: %d, résolues localement %d (%.0f%%), Gemini %d",
+                             total, local, total > 0 ? 100.0 * local / total : 0.0, total - local);
+    }
+
+    public static final class Term {
+        public final String text;
+        public final double weight;
+
+        Term(String text, double weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s:%.1f", text, weight);
+        }
+    }
+
+    public static final class Analysis {
+        /** Termes pondérés, du plus au moins important (thèmes reconnus puis mots inconnus) */
+        public final List<Term> terms;
+        /** Thèmes reconnus, par ordre d'apparition */
+        public final List<String> themes;
+        /** Part des mots porteurs de sens reconnus par le lexique (0..1) */
+        public final double confidence;
+        public final long elapsedMicros;
+
+        Analysis(List<Term> terms, List<String> themes, double confidence, long elapsedMicros) {
+            this.terms = terms;
+            this.themes = themes;
+            this.confidence = confidence;
+            this.elapsedMicros = elapsedMicros;
+        }
+
+        /** true si l'analyse locale suffit (au moins un thème et assez de mots reconnus) */
+        public boolean isConfident() {
+            return !themes.isEmpty() && confidence >= MIN_CONFIDENCE;
+        }
+
+        /** Les max termes les plus lourds, équivalent local des "2-3 mots-clés" demandés à Gemini. */
+        public List<String> keywords(int max) {
+            List<String> keywords = new ArrayList<>(Math.min(max, terms.size()));
+            for (int i = 0; i < terms.size() && keywords.size() < max; i++) {
+                keywords.add(terms.get(i).text);
+            }
+            return keywords;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "confiance %.2f, termes %s (%d µs)", confidence, terms, elapsedMicros);
+        }
+    }
+}
@@ -8,17 +8,32 @@ import java.util.*;
 
 public class QuranAIService {
     private static final String TAG = "QuranAIService";
+    private static final long TAFSIR_CACHE_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final String COLLECTION = "quran_knowledge";
+    private static final int VECTOR_SIZE = 384;
+    private static final long DEFAULT_SEARCH_BUDGET_MS = 8000;
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final long KEYWORD_SEARCH_RESERVE_MS = 3000;
+    private static final long MERGE_MARGIN_MS = 500;
+    private static final int MAX_KEYWORDS = 3;
     
     private final QuranService quranService;
     private final GeminiBasicClient geminiClient;
     private final QdrantClient qdrantClient;
+    private final LocalVectorIndex localIndex = new LocalVectorIndex();
+    private final HashingEmbedder embedder = new HashingEmbedder(VECTOR_SIZE);
+    private final QueryAnalyzer queryAnalyzer;
     private boolean aiEnabled = false;
+    private final HybridRetriever retriever;
+    private volatile long searchBudgetMs = DEFAULT_SEARCH_BUDGET_MS;
 
     public QuranAIService(QuranService quranService, GeminiBasicClient geminiClient, QdrantClient qdrantClient) {
         this.quranService = quranService;
         this.geminiClient = geminiClient;
         this.qdrantClient = qdrantClient;
         this.aiEnabled = geminiClient != null && qdrantClient != null;
+        this.queryAnalyzer = new QueryAnalyzer(quranService.getThemes());
+        this.retriever = createRetriever();
         
         Log.d(TAG, "Quran AI Service initialisé - AI: " + aiEnabled);
         initializeAIComponents();
@@ -27,79 +42,127 @@ public class QuranAIService {
     private void initializeAIComponents() {
         if (!aiEnabled) return;
         
-        new Thread(() -> {
+        // Travail de fond sans échéance, sur le pool partagé des tâches IA
+        AiFuture.supply(Deadline.none(), future -> {
             try {
-                // Initialiser Qdrant avec des embeddings de versets
+                // Initialiser l'index local et Qdrant avec des embeddings de versets
                 initializeQdrantWithVersets();
                 Log.d(TAG, "Composants AI initialisés avec succès");
             } catch (Exception e) {
                 Log.e(TAG, "Erreur initialisation AI", e);
             }
-        }).start();
+            return null;
+        });
     }
 
     /**
      * RECHERCHE HYBRIDE - Qdrant + Gemini
+     * Première page des résultats fusionnés, dans le budget de latence configuré.
      */
     public List<QuranVerse> smartSearch(String query) {
-        List<QuranVerse> results = new ArrayList<>();
-        
-        // 1. Recherche locale de base
-        results.addAll(quranService.searchByTheme(query));
-        results.addAll(quranService.searchByKeyword(query));
-        
-        // 2. Si AI activée, recherche avancée
-        if (aiEnabled && results.size() < 3) {
-            try {
-                List<QuranVerse> aiResults = advancedAISearch(query);
-                results.addAll(aiResults);
-            } catch (Exception e) {
-                Log.e(TAG, "Erreur recherche AI", e);
-            }
+        return search(query, 0, DEFAULT_PAGE_SIZE).verses();
+    }
+
+    /**
+     * Thème, mots-clés et recherche vectorielle (Gemini + Qdrant) en parallèle, fusionnés par RRF.
+     * Une source qui dépasse le budget est ignorée: la page est alors partielle (page.isPartial()).
+     */
+    public HybridRetriever.Page search(String query, int offset, int limit) {
+        return retriever.search(query, offset, limit, Deadline.in(searchBudgetMs));
+    }
+
+    /**
+     * Version asynchrone de smartSearch: toutes les sources partagent l'échéance donnée,
+     * cancel() coupe les appels Gemini et Qdrant en cours.
+     */
+    public AiFuture<List<QuranVerse>> smartSearchAsync(final String query, Deadline deadline) {
+        return retriever.searchAsync(query, 0, DEFAULT_PAGE_SIZE, deadline).then(HybridRetriever.Page::verses);
+    }
+
+    /** Budget de latence de la recherche hybride, toutes sources confondues. */
+    public void setSearchBudgetMs(long budgetMs) {
+        this.searchBudgetMs = budgetMs;
+    }
+
+    private HybridRetriever createRetriever() {
+        HybridRetriever hybrid = new HybridRetriever(HybridRetriever.DEFAULT_RRF_K)
+                .add("thème", (query, scope) -> quranService.searchByTheme(query))
+                .add("mots-clés", (query, scope) -> quranService.searchByKeyword(query));
+        if (aiEnabled) {
+            hybrid.add("vectoriel", this::advancedAISearch);
         }
-        
-        // Éliminer les doublons
-        Set<QuranVerse> uniqueResults = new LinkedHashSet<>(results);
-        return new ArrayList<>(uniqueResults);
+        return hybrid;
     }
 
     /**
      * RECHERCHE AVANCÉE AVEC GEMINI + QDRANT
+     * Mots-clés tirés localement (QueryAnalyzer); si la requête n'est pas comprise, l'analyse Gemini
+     * et la recherche vectorielle sur la requête brute partent ensemble, et la recherche par mots-clés
+     * suit si l'analyse répond à temps, sinon on garde les résultats directs.
      */
-    private List<QuranVerse> advancedAISearch(String query) {
+    private List<QuranVerse> advancedAISearch(String query, AiFuture<?> scope) {
         List<QuranVerse> results = new ArrayList<>();
-        
-        try {
-            // Étape 1: Gemini analyse la requête
-            String analyzedQuery = geminiClient.callGemini(
+        List<QdrantClient.SearchResult> empty = Collections.emptyList();
+        // Les étapes s'arrêtent un peu avant l'échéance globale, pour rendre ce qui a été trouvé
+        Deadline deadline = scope.getDeadline().shorter(scope.getDeadline().remainingMs() - MERGE_MARGIN_MS);
+
+        // Étape 1: analyse locale; Gemini seulement si elle n'est pas assez sûre
+        // (en laissant du temps pour la recherche par mots-clés)
+        QueryAnalyzer.Analysis local = queryAnalyzer.analyze(query);
+        List<String> keywords = local.isConfident() ? local.keywords(MAX_KEYWORDS) : null;
+        AiFuture<GeminiResult> analysis = null;
+        if (keywords == null) {
+            analysis = geminiClient.generateContentAsync(
                 "Analyse cette requête et extrait les thèmes coraniques principaux: \"" + query + 
-                "\". Réponds uniquement avec 2-3 mots-clés séparés par des virgules."
-            );
-            
-            Log.d(TAG, "Gemini analyse: " + analyzedQuery);
-            
-            // Étape 2: Recherche Qdrant avec les mots-clés
-            String[] keywords = analyzedQuery.split(",");
+                "\". Réponds uniquement avec 2-3 mots-clés séparés par des virgules.",
+                ResponseCache.DEFAULT_TTL_MS, GeminiRateLimiter.Lane.INTERACTIVE,
+                deadline.shorter(deadline.remainingMs() - KEYWORD_SEARCH_RESERVE_MS));
+            scope.onCancel(analysis::cancel);
+        }
+
+        // Pendant ce temps: recherche vectorielle sur la requête telle quelle
+        AiFuture<List<QdrantClient.SearchResult>> direct =
+                vectorSearchAsync(Collections.singletonList(generateEmbedding(query)), deadline);
+        scope.onCancel(direct::cancel);
+
+        if (analysis != null) {
+            GeminiResult analyzed = analysis.getOrDefault(null);
+            if (analyzed != null && analyzed.isSuccess() && !scope.isDone()) {
+                Log.d(TAG, "Gemini analyse: " + analyzed.text);
+                keywords = Arrays.asList(analyzed.text.split(","));
+            } else {
+                Log.w(TAG, "Analyse Gemini indisponible" + (analyzed != null ? " (" + analyzed + ")" : "")
+                        + ", résultats de la requête directe seulement");
+            }
+        }
+
+        // Étape 2: Recherche Qdrant avec tous les mots-clés en un seul appel groupé
+        List<float[]> vectors = new ArrayList<>();
+        if (keywords != null) {
             for (String keyword : keywords) {
                 String cleanKeyword = keyword.trim();
                 if (cleanKeyword.length() > 2) {
-                    List<QdrantClient.SearchResult> qdrantResults = 
-                        qdrantClient.search("quran_knowledge", generateEmbedding(cleanKeyword), 2);
-                    
-                    for (QdrantClient.SearchResult result : qdrantResults) {
-                        if (result.score > 0.3) {
-                            // Convertir le résultat Qdrant en QuranVerse
-                            QuranVerse verse = parseQdrantResult(result);
-                            if (verse != null) {
-                                results.add(verse);
-                            }
-                        }
-                    }
+                    vectors.add(generateEmbedding(cleanKeyword));
+                }
+            }
+        }
+        AiFuture<List<QdrantClient.SearchResult>> byKeywords =
+                vectors.isEmpty() ? null : vectorSearchAsync(vectors, deadline);
+        if (byKeywords != null) scope.onCancel(byKeywords::cancel);
+
+        List<List<QdrantClient.SearchResult>> perQuery = new ArrayList<>(2);
+        perQuery.add(direct.getOrDefault(empty));
+        if (byKeywords != null) perQuery.add(byKeywords.getOrDefault(empty));
+
+        // Classement unique par score décroissant (un rang par verset pour la fusion RRF)
+        for (QdrantClient.SearchResult result : QdrantClient.mergeResults(perQuery)) {
+            if (result.score > 0.3) {
+                // Convertir le résultat Qdrant en QuranVerse
+                QuranVerse verse = parseQdrantResult(result);
+                if (verse != null) {
+                    results.add(verse);
                 }
             }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Erreur recherche AI avancée", e);
         }
         
         return results;
@@ -123,7 +186,9 @@ public class QuranAIService {
                 verse.getReference()
             );
             
-            String aiTafsir = geminiClient.callGemini(prompt);
+            // Exégèse stable pour un verset donné: conservée plus longtemps, générée en arrière-plan
+            // (cède la place aux questions de l'utilisateur)
+            String aiTafsir = geminiClient.callGemini(prompt, TAFSIR_CACHE_TTL_MS, GeminiRateLimiter.Lane.BACKGROUND);
             return "🤖 **Exégèse IA**\n\n" + aiTafsir + 
                    "\n\n_*Généré par Gemini AI_";
             
@@ -141,6 +206,13 @@ public class QuranAIService {
             return quranService.searchByTheme(query);
         }
         
+        // Thème reconnu localement: pas d'aller-retour Gemini
+        QueryAnalyzer.Analysis local = queryAnalyzer.analyze(query);
+        if (local.isConfident()) {
+            Log.d(TAG, "Intention détectée localement: " + local.themes.get(0));
+            return smartSearch(local.themes.get(0));
+        }
+
         try {
             // Utiliser Gemini pour comprendre l'intention
             String intentAnalysis = geminiClient.callGemini(
@@ -192,23 +264,43 @@ public class QuranAIService {
         }
     }
 
+    /**
+     * Qdrant si configuré (requête annulable, bornée par l'échéance),
+     * sinon index HNSW local (hors ligne, en mémoire: résultat immédiat).
+     */
+    private AiFuture<List<QdrantClient.SearchResult>> vectorSearchAsync(List<float[]> vectors, Deadline deadline) {
+        if (qdrantClient.isConfigured()) {
+            return qdrantClient.searchBatchAsync(COLLECTION, vectors, 2, deadline);
+        }
+        return AiFuture.completed(localIndex.searchBatch(COLLECTION, vectors, 2));
+    }
+
     /**
      * INITIALISATION QDRANT AVEC VERSETS
      */
     private void initializeQdrantWithVersets() {
         try {
-            // Créer la collection si elle n'existe pas
-            qdrantClient.createCollection("quran_knowledge", 384);
+            // Créer les collections si elles n'existent pas
+            localIndex.createCollection(COLLECTION, VECTOR_SIZE);
+            if (qdrantClient.isConfigured()) {
+                qdrantClient.createCollection(COLLECTION, VECTOR_SIZE);
+            }
             
-            // Ajouter des versets avec embeddings
+            // Ajouter des versets avec embeddings, envoyés à Qdrant en lots parallèles
             List<QuranVerse> allVerses = getAllVersesForAI();
+            List<QdrantClient.Point> points = new ArrayList<>(allVerses.size());
             for (int i = 0; i < allVerses.size(); i++) {
                 QuranVerse verse = allVerses.get(i);
                 float[] embedding = generateEmbedding(verse.getVerse() + " " + verse.getTheme());
-                addVerseToQdrant(verse, embedding, i);
+                localIndex.add(COLLECTION, embedding, verse.getVerse(), verse.getReference());
+                long id = QdrantClient.Point.idFor(verse.getReference(), verse.getVerse());
+                points.add(new QdrantClient.Point(id, embedding, verse.getReference(), verse.getTheme(), verse.getVerse()));
+            }
+            if (qdrantClient.isConfigured()) {
+                qdrantClient.upsertPoints(COLLECTION, points);
             }
             
-            Log.d(TAG, "Qdrant initialisé avec " + allVerses.size() + " versets");
+            Log.d(TAG, "Index vectoriel initialisé avec " + allVerses.size() + " versets");
             
         } catch (Exception e) {
             Log.e(TAG, "Erreur initialisation Qdrant", e);
@@ -216,42 +308,29 @@ public class QuranAIService {
     }
 
     private List<QuranVerse> getAllVersesForAI() {
-        // Récupérer tous les versets de la base
-        List<QuranVerse> allVerses = new ArrayList<>();
-        String[] themes = {"patience", "priere", "gratitude", "espoir", "sagesse", "pardon"};
-        
-        for (String theme : themes) {
-            allVerses.addAll(quranService.searchByTheme(theme));
-        }
-        
-        return allVerses;
-    }
-
-    private void addVerseToQdrant(QuranVerse verse, float[] embedding, int id) {
-        // Implémentation pour ajouter à Qdrant
-        // (Utiliser les méthodes existantes de QdrantClient)
+        // Tous les versets de la base (corpus mappé, ou base intégrée à défaut)
+        return quranService.getAllVerses();
     }
 
     private float[] generateEmbedding(String text) {
-        // Simulation d'embedding - dans la réalité, utiliser Gemini Embeddings
-        float[] embedding = new float[384];
-        Random random = new Random(text.hashCode());
-        for (int i = 0; i < embedding.length; i++) {
-            embedding[i] = random.nextFloat() - 0.5f;
-        }
-        return embedding;
+        // Embedding local déterministe: même texte -> même vecteur (index et caches réutilisables)
+        return embedder.embed(text);
     }
 
     private QuranVerse parseQdrantResult(QdrantClient.SearchResult result) {
-        // Convertir le résultat Qdrant en QuranVerse
-        // Implémentation basée sur la structure des données Qdrant
-        return new QuranVerse("AI:" + result.score, result.text, "ai_generated");
+        // Convertir le résultat Qdrant en QuranVerse (référence du payload si présente)
+        String reference = result.reference.isEmpty() ? "AI:" + result.score : result.reference;
+        return new QuranVerse(reference, result.text, "ai_generated");
     }
 
     public boolean isAIEnabled() {
         return aiEnabled;
     }
 
+    public String getQueryAnalyzerStats() {
+        return queryAnalyzer.getStats();
+    }
+
     public String getAIStatus() {
         if (!aiEnabled) {
             return "🔧 **Mode Basique**\n\nGemini + Qdrant non configurés";
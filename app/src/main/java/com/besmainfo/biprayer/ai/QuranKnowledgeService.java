@@ -2,11 +2,18 @@ package com.besmainfo.biprayer.ai;
 import android.util.Log;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class QuranKnowledgeService {
     private static final String TAG = "QuranKnowledge";
+    private static final String COLLECTION = "quran_knowledge";
+    private static final int VECTOR_SIZE = 384;
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("\\((\\d+:\\d+)\\)");
     private final QdrantClient qdrantClient;
-    private boolean isInitialized = false;
+    private final LocalVectorIndex localIndex = new LocalVectorIndex();
+    private final HashingEmbedder embedder = new HashingEmbedder(VECTOR_SIZE);
+    private volatile boolean isInitialized = false;
 
     public QuranKnowledgeService(QdrantClient qdrantClient) {
         this.qdrantClient = qdrantClient;
@@ -14,24 +21,28 @@ public class QuranKnowledgeService {
     }
 
     private void initializeKnowledgeBase() {
-        new Thread(() -> {
+        AiFuture.supply(Deadline.none(), future -> {
             try {
+                localIndex.createCollection(COLLECTION, VECTOR_SIZE);
                 if (qdrantClient.isConfigured()) {
-                    qdrantClient.createCollection("quran_knowledge", 384);
-                    addSampleQuranData();
-                    isInitialized = true;
-                    Log.d(TAG, "Base Coran initialisée");
+                    qdrantClient.createCollection(COLLECTION, VECTOR_SIZE);
                 }
+                addSampleQuranData();
+                isInitialized = true;
+                Log.d(TAG, "Base Coran initialisée");
             } catch (Exception e) {
                 Log.e(TAG, "Erreur init base", e);
             }
-        }).start();
+            return null;
+        });
     }
 
     public List<String> searchQuranWisdom(String query) {
         List<String> results = new ArrayList<>();
 
-        if (!qdrantClient.isConfigured()) {
+        // Qdrant si configuré, sinon index local une fois initialisé
+        VectorSearch search = qdrantClient.isConfigured() ? qdrantClient : localIndex;
+        if (search == localIndex && localIndex.size(COLLECTION) == 0) {
             return getFallbackVerses(query);
         }
 
@@ -39,7 +50,7 @@ public class QuranKnowledgeService {
             float[] queryVector = generateEmbeddingFromQuery(query);
 
             List<QdrantClient.SearchResult> searchResults =
-                    qdrantClient.search("quran_knowledge", queryVector, 3);
+                    search.search(COLLECTION, queryVector, 3);
 
             if (searchResults == null || searchResults.isEmpty() || searchResults.get(0).score < 0.1f) {
                 return getFallbackVerses(query);
@@ -93,28 +104,41 @@ public class QuranKnowledgeService {
                 "«Garde la prière, car la prière préserve... »"
         };
 
-        for (int i = 0; i < verses.length; i++) {
-            addVerseToKnowledgeBase(verses[i], i);
+        List<QdrantClient.Point> points = new ArrayList<>();
+        for (String verse : verses) {
+            QdrantClient.Point point = addVerseToKnowledgeBase(verse);
+            if (point != null) points.add(point);
+        }
+        if (qdrantClient.isConfigured()) {
+            qdrantClient.upsertPoints(COLLECTION, points);
         }
     }
 
-    private void addVerseToKnowledgeBase(String verse, int id) {
+    private QdrantClient.Point addVerseToKnowledgeBase(String verse) {
         try {
             float[] embedding = generateEmbeddingFromQuery(verse);
+            String reference = extractReference(verse);
+            localIndex.add(COLLECTION, embedding, verse, reference);
+            return new QdrantClient.Point(QdrantClient.Point.idFor(reference, verse), embedding, reference, "", verse);
         } catch (Exception e) {
             Log.e(TAG, "Erreur ajout verset", e);
+            return null;
         }
     }
 
+    /**
+     * "(2:153)" en fin de texte -> "2:153", sinon chaîne vide.
+     */
+    private static String extractReference(String verse) {
+        Matcher matcher = REFERENCE_PATTERN.matcher(verse);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
     private float[] generateEmbeddingFromQuery(String text) {
-        float[] embedding = new float[384];
-        for (int i = 0; i < embedding.length; i++) {
-            embedding[i] = (float) Math.random() - 0.5f;
-        }
-        return embedding;
+        return embedder.embed(text);
     }
 
     public boolean isReady() {
-        return qdrantClient.isConfigured() && isInitialized;
+        return isInitialized;
     }
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.besmainfo.biprayer.ai;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des réponses Gemini à deux niveaux:
+ * - mémoire: LRU (ordre d'accès) borné en caractères;
+ * - disque: un fichier par clé dans le répertoire de cache, borné en octets (les plus anciens sont supprimés).
+ *
+ * Clé = SHA-256(modèle, langue, prompt normalisé). Chaque entrée porte son expiration (TTL).
+ */
+public class ResponseCache {
+    private static final String TAG = "ResponseCache";
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".resp";
+
+    public static final long DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+    public static final int DEFAULT_MEMORY_CHARS = 1024 * 1024;
+    public static final long DEFAULT_DISK_BYTES = 8L * 1024 * 1024;
+
+    private static ResponseCache defaultCache;
+
+    private final File directory;
+    private final int memoryBudgetChars;
+    private final long diskBudgetBytes;
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private int memoryChars = 0;
+    private long diskBytes = -1; // calculé au premier accès disque
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    private static final class Entry {
+        final String text;
+        final long expiresAt;
+
+        Entry(String text, long expiresAt) {
+            this.text = text;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** @param directory répertoire du niveau disque, ou null pour un cache uniquement en mémoire */
+    public ResponseCache(File directory) {
+        this(directory, DEFAULT_MEMORY_CHARS, DEFAULT_DISK_BYTES);
+    }
+
+    public ResponseCache(File directory, int memoryBudgetChars, long diskBudgetBytes) {
+        this.directory = directory;
+        this.memoryBudgetChars = memoryBudgetChars;
+        this.diskBudgetBytes = diskBudgetBytes;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "⚠️ Répertoire de cache indisponible: " + directory);
+        }
+    }
+
+    /** Cache partagé par tous les clients, sous getCacheDir()/gemini_responses. */
+    public static synchronized ResponseCache getDefault(Context context) {
+        if (defaultCache == null) {
+            File directory = null;
+            try {
+                directory = new File(context.getApplicationContext().getCacheDir(), "gemini_responses");
+            } catch (Exception e) {
+                Log.w(TAG, "Cache disque indisponible, mémoire seule: " + e.getMessage());
+            }
+            defaultCache = new ResponseCache(directory);
+        }
+        return defaultCache;
+    }
+
+    // ============================================================
+    //  CLÉ
+    // ============================================================
+
+    /** Espaces repliés et casse ignorée: deux prompts qui ne diffèrent que par la mise en forme partagent l'entrée. */
+    static String normalizePrompt(String prompt) {
+        StringBuilder normalized = new StringBuilder(prompt.length());
+        boolean space = false;
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) normalized.append(' ');
+                normalized.append(c);
+                space = false;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public static String key(String model, String language, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((language != null ? language : "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(normalizePrompt(prompt).getBytes(StandardCharsets.UTF_8));
+
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+                hex[2 * i + 1] = Character.forDigit(hash[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    // ============================================================
+    //  LECTURE / ÉCRITURE
+    // ============================================================
+
+    /** @return la réponse en cache non expirée, ou null */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    memoryHits.incrementAndGet();
+                    return entry.text;
+                }
+                removeFromMemory(key);
+            }
+        }
+
+        Entry entry = readFromDisk(key, now);
+        if (entry != null) {
+            putInMemory(key, entry);
+            diskHits.incrementAndGet();
+            return entry.text;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String text, long ttlMs) {
+        if (text == null || ttlMs <= 0) return;
+        Entry entry = new Entry(text, System.currentTimeMillis() + ttlMs);
+        putInMemory(key, entry);
+        writeToDisk(key, entry);
+        stores.incrementAndGet();
+    }
+
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            memoryChars = 0;
+        }
+        if (directory == null) return;
+        synchronized (this) {
+            File[] files = listEntries();
+            for (File file : files) {
+                if (!file.delete()) Log.w(TAG, "Suppression impossible: " + file.getName());
+            }
+            diskBytes = 0;
+        }
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        if (entry.text.length() > memoryBudgetChars) return;
+        synchronized (memory) {
+            removeFromMemory(key);
+            memory.put(key, entry);
+            memoryChars += entry.text.length();
+
+            Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+            while (memoryChars > memoryBudgetChars && eldest.hasNext()) {
+                memoryChars -= eldest.next().getValue().text.length();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void removeFromMemory(String key) {
+        Entry removed = memory.remove(key);
+        if (removed != null) memoryChars -= removed.text.length();
+    }
+
+    // ============================================================
+    //  NIVEAU DISQUE
+    // ============================================================
+
+    private Entry readFromDisk(String key, long now) {
+        if (directory == null) return null;
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                deleteFromDisk(file);
+                return null;
+            }
+            long expiresAt = in.readLong();
+            if (expiresAt <= now) {
+                deleteFromDisk(file);
+                return null;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            file.setLastModified(now); // l'éviction disque suit l'ordre d'accès
+            return new Entry(new String(bytes, StandardCharsets.UTF_8), expiresAt);
+        } catch (IOException e) {
+            Log.w(TAG, "Entrée de cache illisible " + file.getName() + ": " + e.getMessage());
+            deleteFromDisk(file);
+            return null;
+        }
+    }
+
+    private synchronized void writeToDisk(String key, Entry entry) {
+        if (directory == null) return;
+        ensureDiskSize();
+
+        File file = new File(directory, key + SUFFIX);
+        File temp = new File(directory, key + ".tmp");
+        byte[] bytes = entry.text.getBytes(StandardCharsets.UTF_8);
+        long previous = file.length();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(entry.expiresAt);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Écriture cache impossible: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+
+        diskBytes += file.length() - previous;
+        if (diskBytes > diskBudgetBytes) trimDisk();
+    }
+
+    private synchronized void deleteFromDisk(File file) {
+        long length = file.length();
+        if (file.delete() && diskBytes >= 0) diskBytes -= length;
+    }
+
+    private void ensureDiskSize() {
+        if (diskBytes >= 0) return;
+        long total = 0;
+        for (File file : listEntries()) total += file.length();
+        diskBytes = total;
+    }
+
+    /** Supprime les fichiers les plus anciens jusqu'à revenir à 90 % du budget. */
+    private void trimDisk() {
+        File[] files = listEntries();
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+
+        long target = diskBudgetBytes * 9 / 10;
+        int removed = 0;
+        for (int i = 0; i < order.length && diskBytes > target; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+                removed++;
+            }
+        }
+        Log.d(TAG, "🧹 Cache disque: " + removed + " entrées supprimées, " + (diskBytes / 1024) + " Ko");
+    }
+
+    private File[] listEntries() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files != null ? files : new File[0];
+    }
+
+    // ============================================================
+    //  STATISTIQUES
+    // ============================================================
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public String getStats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        int entries;
+        int chars;
+        synchronized (memory) {
+            entries = memory.size();
+            chars = memoryChars;
+        }
+        return String.format(Locale.US,
+                "Cache réponses: %d succès (%d mémoire, %d disque), %d échecs, taux %.0f%%, %d écritures | mémoire %d entrées / %d Ko, disque %d Ko",
+                hits, memoryHits.get(), diskHits.get(), misses.get(), total > 0 ? 100.0 * hits / total : 0.0,
+                stores.get(), entries, chars * 2 / 1024, Math.max(diskBytes, 0) / 1024);
+    }
+}
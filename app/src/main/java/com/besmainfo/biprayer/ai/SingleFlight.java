@@ -0,0 +1,72 @@
+package com.besmainfo.biprayer.ai;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Regroupe les appels concurrents identiques: le premier appelant pour une clé exécute le chargement,
+ * les suivants attendent et reçoivent le même résultat (ou la même exception).
+ * Une fois l'appel terminé la clé est libérée: rien n'est mis en cache ici.
+ */
+public final class SingleFlight<K, V> {
+    private final String name;
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private static final class Flight<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        V value;
+        Throwable error;
+    }
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        calls.incrementAndGet();
+        Flight<V> flight = new Flight<>();
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            existing.done.await();
+            if (existing.error != null) throw rethrow(existing.error);
+            return existing.value;
+        }
+
+        try {
+            flight.value = loader.call();
+        } catch (Throwable t) {
+            // Error comprise: les appelants en attente ne doivent jamais recevoir null sans exception
+            flight.error = t;
+        } finally {
+            inFlight.remove(key, flight);
+            flight.done.countDown();
+        }
+        if (flight.error != null) throw rethrow(flight.error);
+        return flight.value;
+    }
+
+    /** Relance l'échec tel quel: Exception pour l'appelant, Error propagée sans être enveloppée. */
+    private static Exception rethrow(Throwable error) {
+        if (error instanceof Error) throw (Error) error;
+        return (Exception) error;
+    }
+
+    public long getCalls() { return calls.get(); }
+    public long getDeduplicated() { return deduplicated.get(); }
+    public int getInFlight() { return inFlight.size(); }
+
+    public String getStats() {
+        long total = calls.get();
+        long shared = deduplicated.get();
+        return String.format(Locale.US, "%s: %d appels, %d regroupés (%.0f%%), %d en cours",
+                             name, total, shared, total > 0 ? 100.0 * shared / total : 0.0, inFlight.size());
+    }
+}
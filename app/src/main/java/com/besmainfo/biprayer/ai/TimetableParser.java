@@ -0,0 +1,175 @@
+package com.besmainfo.biprayer.ai;
+
+import android.util.Log;
+import com.besmainfo.biprayer.services.TimetableStore;
+import com.besmainfo.biprayer.services.TimetableStore.DaySchedule;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extrait la grille structurée de la réponse du modèle de vision.
+ * Le prompt demande, après la description lisible, un bloc ```timetable``` d'une ligne par jour:
+ *   2026-10-17,05:48,07:21,12:47,15:52,18:13,19:39   (le lever du soleil peut valoir "-")
+ * Seul ce bloc est lu: un texte libre (ou le texte de démonstration) ne produit jamais de grille.
+ */
+public final class TimetableParser {
+    private static final String TAG = "TimetableParser";
+
+    public static final String BLOCK_START = "```timetable";
+    private static final String BLOCK_END = "```";
+
+    /** Consigne ajoutée au prompt d'analyse d'horaires; %s = date du jour (aaaa-mm-jj). */
+    public static final String PROMPT_INSTRUCTIONS =
+            "After your answer, if the image is a prayer timetable, add a block starting with the line " + BLOCK_START
+            + " and ending with " + BLOCK_END + ", with one line per day shown: "
+            + "YYYY-MM-DD,Fajr,Sunrise,Dhuhr,Asr,Maghrib,Isha using 24-hour HH:MM times and '-' for a missing time. "
+            + "Today is %s: use it to infer the month and year when the timetable omits them.";
+
+    private static final Pattern ISO_DATE = Pattern.compile("(\\d{4})-(\\d{1,2})-(\\d{1,2})");
+    private static final Pattern DMY_DATE = Pattern.compile("(\\d{1,2})[/.](\\d{1,2})[/.](\\d{4})");
+    private static final Pattern TIME = Pattern.compile("(\\d{1,2})\\s*[:hH.]\\s*(\\d{2})\\s*([aApP][mM])?");
+
+    private static final int SUNRISE = 1;
+    private static final int DHUHR = 2;
+
+    private TimetableParser() {
+    }
+
+    public static String prompt(String basePrompt, Calendar today) {
+        return basePrompt + " " + String.format(Locale.US, PROMPT_INSTRUCTIONS,
+                String.format(Locale.US, "%04d-%02d-%02d", today.get(Calendar.YEAR),
+                              today.get(Calendar.MONTH) + 1, today.get(Calendar.DAY_OF_MONTH)));
+    }
+
+    /**
+     * @return les jours valides du bloc, dans l'ordre de la réponse (liste vide si pas de bloc);
+     *         une ligne dont la date ne suit pas strictement la précédente retenue (doublon, désordre) est rejetée
+     */
+    public static List<DaySchedule> parse(String text) {
+        List<DaySchedule> days = new ArrayList<>();
+        String block = findBlock(text);
+        if (block == null) return days;
+
+        int rejected = 0;
+        int previousDate = -1;
+        for (String line : block.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            DaySchedule day = parseLine(line);
+            if (day != null && day.date > previousDate) {
+                days.add(day);
+                previousDate = day.date;
+            } else {
+                if (day != null) Log.d(TAG, "Jour hors ordre ou en double: " + day.date);
+                rejected++;
+            }
+        }
+        Log.d(TAG, "📅 Grille extraite: " + days.size() + " jours" + (rejected > 0 ? ", " + rejected + " lignes rejetées" : ""));
+        return days;
+    }
+
+    /** Texte à afficher: la réponse sans le bloc machine. */
+    public static String stripBlock(String text) {
+        if (text == null) return null;
+        int start = text.indexOf(BLOCK_START);
+        if (start < 0) return text;
+        int end = text.indexOf(BLOCK_END, start + BLOCK_START.length());
+        String after = end >= 0 ? text.substring(end + BLOCK_END.length()) : "";
+        return (text.substring(0, start) + after).trim();
+    }
+
+    private static String findBlock(String text) {
+        if (text == null) return null;
+        int start = text.indexOf(BLOCK_START);
+        if (start < 0) return null;
+        start += BLOCK_START.length();
+        int end = text.indexOf(BLOCK_END, start);
+        return end >= 0 ? text.substring(start, end) : text.substring(start);
+    }
+
+    static DaySchedule parseLine(String line) {
+        String[] fields = line.split("\\s*[,;|\\t]\\s*");
+        if (fields.length < TimetableStore.PRAYERS.length + 1) return null;
+
+        int date = parseDate(fields[0]);
+        if (date < 0) return null;
+
+        int[] minutes = new int[TimetableStore.PRAYERS.length];
+        for (int i = 0; i < minutes.length; i++) {
+            minutes[i] = parseTime(fields[i + 1], i);
+            if (minutes[i] == TimetableStore.NO_TIME && i != SUNRISE) return null;
+        }
+        return isPlausible(minutes) ? new DaySchedule(date, minutes) : null;
+    }
+
+    /** @return aaaammjj, ou -1 si la date est invalide */
+    static int parseDate(String field) {
+        int year;
+        int month;
+        int day;
+        Matcher iso = ISO_DATE.matcher(field);
+        Matcher dmy = DMY_DATE.matcher(field);
+        if (iso.find()) {
+            year = Integer.parseInt(iso.group(1));
+            month = Integer.parseInt(iso.group(2));
+            day = Integer.parseInt(iso.group(3));
+        } else if (dmy.find()) {
+            day = Integer.parseInt(dmy.group(1));
+            month = Integer.parseInt(dmy.group(2));
+            year = Integer.parseInt(dmy.group(3));
+        } else {
+            return -1;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.setLenient(false);
+        try {
+            calendar.set(year, month - 1, day);
+            calendar.getTime(); // valide la date (31 février...)
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        return TimetableStore.dateKey(calendar);
+    }
+
+    /**
+     * Minutes depuis minuit. Accepte 05:48, 5h48, 5.48 et 5:48 PM; sans AM/PM, une heure du matin
+     * impossible pour la prière (ex. Maghrib 6:20 sur une grille en 12 h) passe l'après-midi.
+     */
+    static int parseTime(String field, int prayerIndex) {
+        Matcher matcher = TIME.matcher(field);
+        if (!matcher.find()) return TimetableStore.NO_TIME;
+        int hour = Integer.parseInt(matcher.group(1));
+        int minute = Integer.parseInt(matcher.group(2));
+        if (hour > 23 || minute > 59) return TimetableStore.NO_TIME;
+
+        String meridiem = matcher.group(3);
+        if (meridiem != null) {
+            if (hour > 12 || hour == 0) return TimetableStore.NO_TIME;
+            boolean pm = meridiem.toLowerCase(Locale.ROOT).startsWith("p");
+            hour = hour % 12 + (pm ? 12 : 0);
+        } else if (hour >= 1 && hour < 12 && (prayerIndex > DHUHR || (prayerIndex == DHUHR && hour < 10))) {
+            hour += 12;
+        }
+        return hour * 60 + minute;
+    }
+
+    /** Ordre Fajr < lever < Dhuhr < Asr < Maghrib < Isha (Isha peut passer minuit). */
+    private static boolean isPlausible(int[] minutes) {
+        int previous = -1;
+        for (int i = 0; i < minutes.length; i++) {
+            int value = minutes[i];
+            if (value == TimetableStore.NO_TIME) continue;
+            boolean ishaAfterMidnight = i == minutes.length - 1 && value < minutes[0];
+            if (value <= previous && !ishaAfterMidnight) return false;
+            previous = value;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package com.besmainfo.biprayer.ai;
+
+import java.util.List;
+
+/**
+ * Contrat commun de recherche vectorielle: Qdrant (distant) ou index HNSW local (hors ligne).
+ */
+public interface VectorSearch {
+    List<QdrantClient.SearchResult> search(String collectionName, float[] vector, int limit);
+
+    /**
+     * Plusieurs requêtes en un appel (limit résultats chacune), fusionnées: dédoublonnées par texte
+     * en gardant le meilleur score, triées par score décroissant.
+     */
+    List<QdrantClient.SearchResult> searchBatch(String collectionName, List<float[]> vectors, int limit);
+}
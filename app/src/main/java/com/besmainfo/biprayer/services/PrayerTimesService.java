@@ -8,6 +8,8 @@ import java.util.*;
 
 public class PrayerTimesService {
     private static final String TAG = "PrayerTimesService";
+    /** Préférence (app_prefs): utiliser la grille scannée plutôt que le calcul, activée par défaut */
+    public static final String PREF_USE_SCANNED_TIMETABLE = "pref_use_scanned_timetable";
     private final Context context;
     private Location currentLocation;
     private String calculationMethod = "MWL";
@@ -24,6 +26,24 @@ public class PrayerTimesService {
 
     public Map<String, PrayerTime> calculatePrayerTimes() {
         Map<String, PrayerTime> prayerTimes = new LinkedHashMap<>();
+
+        // Grille de la mosquée relevée par photo: prioritaire sauf si désactivée dans les paramètres
+        boolean useScanned = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE)
+                .getBoolean(PREF_USE_SCANNED_TIMETABLE, true);
+        TimetableStore.DaySchedule scanned = useScanned
+                ? TimetableStore.getDefault(context).get(TimetableStore.dateKey(Calendar.getInstance()))
+                : null;
+        if (scanned != null) {
+            for (int i = 0; i < TimetableStore.PRAYERS.length; i++) {
+                int minutes = scanned.getMinutes(i);
+                if (minutes == TimetableStore.NO_TIME) continue;
+                String name = TimetableStore.PRAYERS[i];
+                // Même locale que les horaires calculés
+                String time = TimetableStore.formatMinutes(minutes, Locale.getDefault());
+                prayerTimes.put(name, new PrayerTime(name, time, getPrayerEmoji(name)));
+            }
+            return prayerTimes;
+        }
         
         if (currentLocation == null) {
             return getDemoPrayerTimes();
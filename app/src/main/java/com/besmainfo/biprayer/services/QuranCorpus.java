@@ -0,0 +1,205 @@
+package com.besmainfo.biprayer.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Corpus coranique binaire lu à travers un ByteBuffer (typiquement mappé en mémoire).
+ * Seuls l'en-tête et les thèmes sont décodés à l'ouverture; le texte d'un verset
+ * n'est décodé que lorsqu'il est demandé.
+ *
+ * Format (little-endian):
+ * <pre>
+ * en-tête     : magic "QCB1" | u16 version | u8 nbLangues | u8 nbThèmes
+ *               | u32 nbVersets | u32 offsetRépertoire | u32 offsetChaînes
+ * langues     : nbLangues x 2 octets ASCII ("ar", "fr", "en"...)
+ * thèmes      : nbThèmes x (varint longueur + nom UTF-8 | varint nbVersets | varint deltas d'indices)
+ * répertoire  : nbVersets x 8 octets, triés par sourate:verset
+ *               (u8 sourate | u8 réservé | u16 verset | u32 offset de l'enregistrement)
+ * chaînes     : par verset, pour chaque langue: varint longueur + texte UTF-8 (longueur 0 = absent)
+ * </pre>
+ */
+public final class QuranCorpus {
+    public static final int MAGIC = 0x31424351; // "QCB1" lu en little-endian
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+    public static final int DIRECTORY_ENTRY_SIZE = 8;
+    /** Octet de thème principal "aucun": 254 thèmes au plus (0..253), lus non signés */
+    public static final int NO_THEME = 0xFF;
+
+    private final ByteBuffer buffer;
+    private final int verseCount;
+    private final int directoryOffset;
+    private final int stringsOffset;
+    private final String[] languages;
+    private final Map<String, int[]> themes;
+    private final byte[] primaryTheme;
+    private final String[] themeNames;
+
+    private QuranCorpus(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Corpus invalide: signature inconnue");
+        }
+        int version = this.buffer.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Corpus invalide: version " + version + " non supportée");
+        }
+
+        int languageCount = this.buffer.get(6) & 0xFF;
+        int themeCount = this.buffer.get(7) & 0xFF;
+        this.verseCount = this.buffer.getInt(8);
+        this.directoryOffset = this.buffer.getInt(12);
+        this.stringsOffset = this.buffer.getInt(16);
+
+        int[] cursor = {HEADER_SIZE};
+        this.languages = new String[languageCount];
+        for (int i = 0; i < languageCount; i++) {
+            byte[] code = {this.buffer.get(cursor[0]), this.buffer.get(cursor[0] + 1)};
+            languages[i] = new String(code, StandardCharsets.US_ASCII);
+            cursor[0] += 2;
+        }
+
+        this.themes = new LinkedHashMap<>();
+        this.themeNames = new String[themeCount];
+        this.primaryTheme = new byte[verseCount];
+        Arrays.fill(primaryTheme, (byte) NO_THEME);
+
+        for (int t = 0; t < themeCount; t++) {
+            String name = readString(cursor);
+            int count = readVarint(cursor);
+            int[] verses = new int[count];
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readVarint(cursor);
+                verses[i] = previous;
+                if ((primaryTheme[previous] & 0xFF) == NO_THEME) primaryTheme[previous] = (byte) t;
+            }
+            themeNames[t] = name;
+            themes.put(name, verses);
+        }
+    }
+
+    /**
+     * Ouvre un corpus; le buffer n'est pas copié.
+     */
+    public static QuranCorpus open(ByteBuffer buffer) throws IOException {
+        return new QuranCorpus(buffer);
+    }
+
+    public int getVerseCount() { return verseCount; }
+
+    public List<String> getLanguages() {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, languages);
+        return list;
+    }
+
+    /**
+     * Index de la langue demandée, ou de la première langue disponible.
+     */
+    public int languageIndex(String code) {
+        for (int i = 0; i < languages.length; i++) {
+            if (languages[i].equalsIgnoreCase(code)) return i;
+        }
+        return 0;
+    }
+
+    public int getLanguageCount() { return languages.length; }
+
+    public int getSurah(int index) {
+        return buffer.get(directoryOffset + index * DIRECTORY_ENTRY_SIZE) & 0xFF;
+    }
+
+    public int getAyah(int index) {
+        return buffer.getShort(directoryOffset + index * DIRECTORY_ENTRY_SIZE + 2) & 0xFFFF;
+    }
+
+    public String getReference(int index) {
+        return getSurah(index) + ":" + getAyah(index);
+    }
+
+    /**
+     * Recherche dichotomique dans le répertoire, -1 si absent.
+     */
+    public int find(int surah, int ayah) {
+        int key = (surah << 16) | ayah;
+        int low = 0;
+        int high = verseCount - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = (getSurah(mid) << 16) | getAyah(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Décode le texte d'un verset dans une langue; chaîne vide si la traduction est absente.
+     */
+    public String getText(int index, int language) {
+        int[] cursor = {stringsOffset + buffer.getInt(directoryOffset + index * DIRECTORY_ENTRY_SIZE + 4)};
+        for (int i = 0; i < language; i++) {
+            int skipped = readVarint(cursor);
+            cursor[0] += skipped;
+        }
+        return readString(cursor);
+    }
+
+    public List<String> getThemes() {
+        return new ArrayList<>(themes.keySet());
+    }
+
+    public int[] getThemeVerses(String theme) {
+        int[] verses = themes.get(theme);
+        return verses != null ? verses : new int[0];
+    }
+
+    /**
+     * Premier thème associé au verset, ou null.
+     */
+    public String getPrimaryTheme(int index) {
+        int theme = primaryTheme[index] & 0xFF;
+        return theme == NO_THEME ? null : themeNames[theme];
+    }
+
+    private int readVarint(int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private String readString(int[] cursor) {
+        int length = readVarint(cursor);
+        if (length == 0) return "";
+
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(cursor[0]);
+        view.get(bytes);
+        cursor[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
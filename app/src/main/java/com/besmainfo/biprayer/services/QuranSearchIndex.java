@@ -0,0 +1,201 @@
+package com.besmainfo.biprayer.services;
+
+import com.besmainfo.biprayer.utils.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Index inversé (terme -> identifiants de versets triés) construit une seule fois.
+ * Une requête coûte de l'ordre du nombre de résultats et non de la taille du corpus.
+ */
+public class QuranSearchIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final TreeMap<String, int[]> postings;
+    private final int documentCount;
+
+    private QuranSearchIndex(TreeMap<String, int[]> postings, int documentCount) {
+        this.postings = postings;
+        this.documentCount = documentCount;
+    }
+
+    public int getDocumentCount() { return documentCount; }
+    public int getTermCount() { return postings.size(); }
+
+    /**
+     * Versets contenant TOUS les termes de la requête (intersection des postings).
+     */
+    public int[] searchAll(String query) {
+        List<int[]> lists = postingsForQuery(query);
+        if (lists.isEmpty()) return EMPTY;
+
+        // Intersecter en commençant par la liste la plus courte
+        Collections.sort(lists, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a.length, b.length);
+            }
+        });
+
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Versets contenant AU MOINS UN des termes de la requête (union des postings).
+     */
+    public int[] searchAny(String query) {
+        int[] result = EMPTY;
+        for (int[] list : postingsForQuery(query)) {
+            result = union(result, list);
+        }
+        return result;
+    }
+
+    /**
+     * Postings d'un terme normalisé, étendu aux termes ayant ce préfixe
+     * (conserve la recherche sur des mots partiels, ex. "pri" -> "priere", "prieres").
+     */
+    public int[] lookup(String term) {
+        SortedMap<String, int[]> prefixed = postings.subMap(term, term + Character.MAX_VALUE);
+        int[] result = EMPTY;
+        for (int[] list : prefixed.values()) {
+            result = union(result, list);
+        }
+        return result;
+    }
+
+    /**
+     * Une entrée vide par terme sans résultat: l'intersection donnera alors un ensemble vide.
+     */
+    private List<int[]> postingsForQuery(String query) {
+        List<String> terms = TextNormalizer.tokenize(query);
+        List<int[]> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            lists.add(lookup(term));
+        }
+        return lists;
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                out[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i = gallop(a, i, b[j]);
+            } else {
+                j = gallop(b, j, a[i]);
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            out[n++] = next;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Premier index >= from tel que list[index] >= target (recherche exponentielle puis dichotomique).
+     */
+    private static int gallop(int[] list, int from, int target) {
+        int step = 1;
+        int low = from;
+        int high = from + 1;
+
+        while (high < list.length && list[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, list.length);
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static class Builder {
+        private final Map<String, Postings> growing = new HashMap<>();
+        private int documentCount = 0;
+
+        /**
+         * Les identifiants doivent être ajoutés dans l'ordre croissant.
+         */
+        public Builder add(int documentId, String text) {
+            documentCount = Math.max(documentCount, documentId + 1);
+
+            for (String term : TextNormalizer.tokenize(text)) {
+                Postings list = growing.get(term);
+                if (list == null) {
+                    list = new Postings();
+                    growing.put(term, list);
+                }
+                list.add(documentId);
+            }
+            return this;
+        }
+
+        public QuranSearchIndex build() {
+            TreeMap<String, int[]> postings = new TreeMap<>();
+            for (Map.Entry<String, Postings> entry : growing.entrySet()) {
+                postings.put(entry.getKey(), entry.getValue().toArray());
+            }
+            return new QuranSearchIndex(postings, documentCount);
+        }
+    }
+
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
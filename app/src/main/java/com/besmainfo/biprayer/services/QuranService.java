@@ -1,19 +1,142 @@
 package com.besmainfo.biprayer.services;
 
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.util.Log;
+import com.besmainfo.biprayer.utils.LanguageHelper;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 public class QuranService {
     private static final String TAG = "QuranService";
+    public static final String CORPUS_ASSET = "quran_corpus.qbin";
     
     private final Map<String, List<QuranVerse>> thematicVerses = new HashMap<>();
-    private final List<QuranVerse> allVerses = new ArrayList<>();
+    private List<QuranVerse> allVerses = new ArrayList<>();
+    private QuranCorpus corpus;
+    private QuranSearchIndex searchIndex;
 
+    /**
+     * Base intégrée (sans contexte Android).
+     */
     public QuranService() {
         initializeQuranDatabase();
         Log.d(TAG, "Service Coran initialisé avec " + allVerses.size() + " versets");
     }
 
+    /**
+     * Base lue depuis le corpus binaire des assets, base intégrée si l'asset est absent.
+     */
+    public QuranService(Context context) {
+        long start = System.nanoTime();
+        try {
+            corpus = mapCorpus(context);
+        } catch (IOException e) {
+            Log.e(TAG, "Erreur ouverture corpus, base intégrée utilisée", e);
+        }
+
+        if (corpus != null) {
+            initializeFromCorpus(corpus, LanguageHelper.getCurrentLanguage(context));
+            Log.d(TAG, "Corpus mappé: " + allVerses.size() + " versets en " +
+                  (System.nanoTime() - start) / 1000 + " µs");
+        } else {
+            initializeQuranDatabase();
+            Log.d(TAG, "Service Coran initialisé avec " + allVerses.size() + " versets");
+        }
+    }
+
+    /**
+     * Mappe l'asset en lecture seule; s'il est compressé dans l'APK, il est d'abord copié une fois.
+     */
+    private QuranCorpus mapCorpus(Context context) throws IOException {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(CORPUS_ASSET);
+             FileInputStream input = descriptor.createInputStream()) {
+            ByteBuffer mapped = input.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength());
+            return QuranCorpus.open(mapped);
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "Asset corpus non mappable directement: " + e.getMessage());
+        }
+
+        File copy = new File(context.getFilesDir(), CORPUS_ASSET);
+        try (InputStream in = new BufferedInputStream(context.getAssets().open(CORPUS_ASSET))) {
+            // available() d'un asset = sa taille décompressée; l'en-tête porte version et compteurs
+            int assetLength = in.available();
+            in.mark(QuranCorpus.HEADER_SIZE);
+            byte[] assetHeader = readHeader(in);
+            in.reset();
+            if (copy.length() != assetLength || !Arrays.equals(assetHeader, readHeader(copy))) {
+                // Première installation ou mise à jour de l'application: la copie est remplacée
+                File temp = new File(copy.getPath() + ".tmp");
+                try (OutputStream out = new FileOutputStream(temp)) {
+                    byte[] buffer = new byte[16 * 1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                if (!temp.renameTo(copy)) {
+                    temp.delete();
+                    throw new IOException("Copie du corpus impossible");
+                }
+                Log.d(TAG, "📦 Corpus copié (" + assetLength + " octets)");
+            }
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, "Asset " + CORPUS_ASSET + " absent");
+            return null;
+        }
+
+        try (FileInputStream input = new FileInputStream(copy)) {
+            FileChannel channel = input.getChannel();
+            return QuranCorpus.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static byte[] readHeader(InputStream in) throws IOException {
+        byte[] header = new byte[QuranCorpus.HEADER_SIZE];
+        int total = 0;
+        int read;
+        while (total < header.length && (read = in.read(header, total, header.length - total)) != -1) {
+            total += read;
+        }
+        return total == header.length ? header : new byte[0];
+    }
+
+    /** @return en-tête de la copie locale, ou null si elle est absente */
+    private static byte[] readHeader(File file) {
+        if (!file.isFile()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            return readHeader(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Aucun texte n'est décodé ici: les versets sont des vues sur le corpus mappé.
+     */
+    private void initializeFromCorpus(QuranCorpus corpus, String language) {
+        int languageIndex = corpus.languageIndex(language);
+        allVerses = new CorpusVerseList(corpus, languageIndex);
+
+        for (String theme : corpus.getThemes()) {
+            List<QuranVerse> verses = new ArrayList<>();
+            for (int index : corpus.getThemeVerses(theme)) {
+                verses.add(new QuranVerse(corpus, index, languageIndex, theme));
+            }
+            thematicVerses.put(theme, verses);
+        }
+    }
+
     private void initializeQuranDatabase() {
         // PATIENCE ET PERSEVERANCE
         List<QuranVerse> patienceVerses = Arrays.asList(
@@ -66,6 +189,31 @@ public class QuranService {
         allVerses.addAll(forgivenessVerses);
     }
 
+    /**
+     * Index inversé construit une seule fois, à la première recherche, pour ne pas décoder
+     * tout le corpus au démarrage. L'identifiant d'un verset est sa position dans allVerses;
+     * avec le corpus, toutes les langues sont indexées.
+     */
+    private synchronized QuranSearchIndex getSearchIndex() {
+        if (searchIndex != null) return searchIndex;
+
+        long start = System.nanoTime();
+        QuranSearchIndex.Builder builder = new QuranSearchIndex.Builder();
+        for (int i = 0; i < allVerses.size(); i++) {
+            if (corpus != null) {
+                for (int language = 0; language < corpus.getLanguageCount(); language++) {
+                    builder.add(i, corpus.getText(i, language));
+                }
+            } else {
+                builder.add(i, allVerses.get(i).getVerse());
+            }
+        }
+        searchIndex = builder.build();
+        Log.d(TAG, "Index de recherche: " + searchIndex.getTermCount() + " termes en " +
+              (System.nanoTime() - start) / 1000 + " µs");
+        return searchIndex;
+    }
+
     public List<QuranVerse> searchByTheme(String theme) {
         String lowerTheme = theme.toLowerCase();
         List<QuranVerse> results = new ArrayList<>();
@@ -77,28 +225,50 @@ public class QuranService {
         }
 
         if (results.isEmpty()) {
-            for (QuranVerse verse : allVerses) {
-                if (verse.getVerse().toLowerCase().contains(lowerTheme) || 
-                    verse.getTheme().toLowerCase().contains(lowerTheme)) {
-                    results.add(verse);
+            Set<QuranVerse> matches = new LinkedHashSet<>(versesFor(getSearchIndex().searchAll(theme)));
+            for (Map.Entry<String, List<QuranVerse>> entry : thematicVerses.entrySet()) {
+                if (entry.getKey().contains(lowerTheme)) {
+                    matches.addAll(entry.getValue());
                 }
             }
+            results.addAll(matches);
         }
 
         return results.subList(0, Math.min(3, results.size()));
     }
 
+    /**
+     * Versets contenant tous les mots de la requête (ET).
+     */
     public List<QuranVerse> searchByKeyword(String keyword) {
-        List<QuranVerse> results = new ArrayList<>();
-        String lowerKeyword = keyword.toLowerCase();
+        List<QuranVerse> results = versesFor(getSearchIndex().searchAll(keyword));
+        return results.subList(0, Math.min(5, results.size()));
+    }
 
-        for (QuranVerse verse : allVerses) {
-            if (verse.getVerse().toLowerCase().contains(lowerKeyword)) {
-                results.add(verse);
-            }
+    /**
+     * Versets contenant au moins un des mots de la requête (OU).
+     */
+    public List<QuranVerse> searchByAnyKeyword(String keywords) {
+        List<QuranVerse> results = versesFor(getSearchIndex().searchAny(keywords));
+        return results.subList(0, Math.min(5, results.size()));
+    }
+
+    private List<QuranVerse> versesFor(int[] verseIds) {
+        List<QuranVerse> verses = new ArrayList<>(verseIds.length);
+        for (int id : verseIds) {
+            verses.add(allVerses.get(id));
         }
+        return verses;
+    }
 
-        return results.subList(0, Math.min(5, results.size()));
+    /** Tous les versets, dans l'ordre du corpus (vue paresseuse en lecture seule). */
+    public List<QuranVerse> getAllVerses() {
+        return Collections.unmodifiableList(allVerses);
+    }
+
+    /** Thèmes connus (lexique de la base ou du corpus). */
+    public Set<String> getThemes() {
+        return Collections.unmodifiableSet(thematicVerses.keySet());
     }
 
     public QuranVerse getVerseOfTheDay() {
@@ -130,32 +300,98 @@ public class QuranService {
                "✨ _Base enrichie quotidiennement_";
     }
 
+    /**
+     * Vue paresseuse sur le corpus: un QuranVerse n'est créé qu'à l'accès.
+     */
+    private static class CorpusVerseList extends AbstractList<QuranVerse> implements RandomAccess {
+        private final QuranCorpus corpus;
+        private final int language;
+
+        CorpusVerseList(QuranCorpus corpus, int language) {
+            this.corpus = corpus;
+            this.language = language;
+        }
+
+        @Override
+        public QuranVerse get(int index) {
+            String theme = corpus.getPrimaryTheme(index);
+            return new QuranVerse(corpus, index, language, theme != null ? theme : "");
+        }
+
+        @Override
+        public int size() {
+            return corpus.getVerseCount();
+        }
+    }
+
     public static class QuranVerse {
         private final String reference;
         private final String verse;
         private final String theme;
+        private final QuranCorpus corpus;
+        private final int corpusIndex;
+        private final int language;
 
         public QuranVerse(String reference, String verse, String theme) {
             this.reference = reference;
             this.verse = verse;
             this.theme = theme;
+            this.corpus = null;
+            this.corpusIndex = -1;
+            this.language = 0;
+        }
+
+        QuranVerse(QuranCorpus corpus, int corpusIndex, int language, String theme) {
+            this.reference = corpus.getReference(corpusIndex);
+            this.verse = null;
+            this.theme = theme;
+            this.corpus = corpus;
+            this.corpusIndex = corpusIndex;
+            this.language = language;
         }
 
         public String getReference() { return reference; }
-        public String getVerse() { return verse; }
         public String getTheme() { return theme; }
 
+        /**
+         * Texte décodé à la demande depuis le corpus; si la traduction manque, autre langue disponible.
+         */
+        public String getVerse() {
+            if (corpus == null) return verse;
+
+            String text = corpus.getText(corpusIndex, language);
+            for (int other = 0; text.isEmpty() && other < corpus.getLanguageCount(); other++) {
+                text = corpus.getText(corpusIndex, other);
+            }
+            return text;
+        }
+
+        /** Un verset est identifié par sa référence (sourate:verset), quelle que soit sa source. */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof QuranVerse)) return false;
+            QuranVerse other = (QuranVerse) o;
+            return reference != null ? reference.equals(other.reference) : other.reference == null;
+        }
+
+        @Override
+        public int hashCode() {
+            return reference != null ? reference.hashCode() : 0;
+        }
+
         @Override
         public String toString() {
-            return "📖 " + verse + " (" + reference + ")";
+            return "📖 " + getVerse() + " (" + reference + ")";
         }
 
         public String toFormattedString() {
-            return "📖 **" + verse + "**\n\n📍 **Référence:** " + reference + 
+            return "📖 **" + getVerse() + "**\n\n📍 **Référence:** " + reference + 
                    "\n🏷️ **Thème:** " + capitalize(theme) + "\n";
         }
 
         private String capitalize(String text) {
+            if (text.isEmpty()) return text;
             return text.substring(0, 1).toUpperCase() + text.substring(1);
         }
     }
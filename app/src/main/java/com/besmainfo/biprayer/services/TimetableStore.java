@@ -0,0 +1,248 @@
+package com.besmainfo.biprayer.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Horaires de prière relevés sur une grille de mosquée (photo analysée), indexés par date.
+ * Stockage compact: dates aaaammjj triées + 6 horaires par jour en minutes depuis minuit (short),
+ * soit 16 octets par jour; lecture par recherche dichotomique, sans calcul ni réseau.
+ * Persisté dans getFilesDir() (données de l'utilisateur, pas un cache jetable).
+ */
+public class TimetableStore {
+    private static final String TAG = "TimetableStore";
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_NAME = "prayer_timetable.bin";
+
+    public static final String[] PRAYERS = {"Fajr", "Sunrise", "Dhuhr", "Asr", "Maghrib", "Isha"};
+    /** Horaire absent de la grille (souvent le lever du soleil) */
+    public static final int NO_TIME = -1;
+    /** Les jours plus anciens sont supprimés à chaque enregistrement */
+    private static final int KEEP_PAST_DAYS = 31;
+
+    private static TimetableStore defaultStore;
+
+    private final File file;
+    private int[] dates = new int[0];
+    private short[] minutes = new short[0];
+    private boolean loaded;
+
+    /** Un jour de la grille: date aaaammjj et minutes depuis minuit, dans l'ordre de PRAYERS. */
+    public static final class DaySchedule {
+        public final int date;
+        private final int[] minutes;
+
+        public DaySchedule(int date, int[] minutes) {
+            if (minutes.length != PRAYERS.length) {
+                throw new IllegalArgumentException("6 horaires attendus, reçu " + minutes.length);
+            }
+            this.date = date;
+            this.minutes = minutes.clone();
+        }
+
+        /** @return minutes depuis minuit, ou NO_TIME */
+        public int getMinutes(int prayerIndex) {
+            return minutes[prayerIndex];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder().append(date);
+            for (int i = 0; i < PRAYERS.length; i++) {
+                out.append(' ').append(PRAYERS[i]).append('=').append(formatMinutes(minutes[i]));
+            }
+            return out.toString();
+        }
+    }
+
+    /** @param file fichier de persistance, ou null pour un stockage uniquement en mémoire */
+    public TimetableStore(File file) {
+        this.file = file;
+    }
+
+    public static synchronized TimetableStore getDefault(Context context) {
+        if (defaultStore == null) {
+            File file = null;
+            try {
+                file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            } catch (Exception e) {
+                Log.w(TAG, "Stockage disque indisponible, mémoire seule: " + e.getMessage());
+            }
+            defaultStore = new TimetableStore(file);
+        }
+        return defaultStore;
+    }
+
+    public static int dateKey(Calendar calendar) {
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    public static String formatMinutes(int minutesOfDay) {
+        return formatMinutes(minutesOfDay, Locale.US);
+    }
+
+    /** @param locale locale d'affichage (chiffres locaux, ex. arabe) */
+    public static String formatMinutes(int minutesOfDay, Locale locale) {
+        if (minutesOfDay == NO_TIME) return "--:--";
+        return String.format(locale, "%02d:%02d", minutesOfDay / 60, minutesOfDay % 60);
+    }
+
+    // ============================================================
+    //  LECTURE / ÉCRITURE
+    // ============================================================
+
+    /** @return les horaires relevés pour ce jour, ou null */
+    public synchronized DaySchedule get(int date) {
+        ensureLoaded();
+        int index = Arrays.binarySearch(dates, date);
+        if (index < 0) return null;
+        int[] day = new int[PRAYERS.length];
+        for (int i = 0; i < day.length; i++) {
+            day[i] = minutes[index * PRAYERS.length + i];
+        }
+        return new DaySchedule(date, day);
+    }
+
+    /**
+     * Fusionne les jours relevés (un jour déjà connu est remplacé) puis enregistre.
+     * @return nombre de jours enregistrés
+     */
+    public synchronized int putAll(List<DaySchedule> days) {
+        if (days.isEmpty()) return 0;
+        ensureLoaded();
+
+        int oldest = dateKey(daysAgo(KEEP_PAST_DAYS));
+        int[] mergedDates = new int[dates.length + days.size()];
+        short[] mergedMinutes = new short[mergedDates.length * PRAYERS.length];
+        int count = 0;
+        for (int i = 0; i < dates.length; i++) {
+            if (dates[i] < oldest || contains(days, dates[i])) continue;
+            mergedDates[count] = dates[i];
+            System.arraycopy(minutes, i * PRAYERS.length, mergedMinutes, count * PRAYERS.length, PRAYERS.length);
+            count++;
+        }
+        int stored = 0;
+        for (DaySchedule day : days) {
+            if (day.date < oldest || Arrays.binarySearch(mergedDates, 0, count, day.date) >= 0) continue;
+            // Insertion triée: quelques dizaines de jours, un décalage suffit
+            int position = -Arrays.binarySearch(mergedDates, 0, count, day.date) - 1;
+            System.arraycopy(mergedDates, position, mergedDates, position + 1, count - position);
+            System.arraycopy(mergedMinutes, position * PRAYERS.length, mergedMinutes,
+                             (position + 1) * PRAYERS.length, (count - position) * PRAYERS.length);
+            mergedDates[position] = day.date;
+            for (int i = 0; i < PRAYERS.length; i++) {
+                mergedMinutes[position * PRAYERS.length + i] = (short) day.minutes[i];
+            }
+            count++;
+            stored++;
+        }
+
+        dates = Arrays.copyOf(mergedDates, count);
+        minutes = Arrays.copyOf(mergedMinutes, count * PRAYERS.length);
+        save();
+        Log.d(TAG, "📅 " + stored + " jours enregistrés, " + count + " au total");
+        return stored;
+    }
+
+    public synchronized void clear() {
+        dates = new int[0];
+        minutes = new short[0];
+        loaded = true;
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(TAG, "Suppression impossible: " + file.getName());
+        }
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return dates.length;
+    }
+
+    private static boolean contains(List<DaySchedule> days, int date) {
+        for (DaySchedule day : days) {
+            if (day.date == date) return true;
+        }
+        return false;
+    }
+
+    private static Calendar daysAgo(int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -days);
+        return calendar;
+    }
+
+    // ============================================================
+    //  PERSISTANCE
+    // ============================================================
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (file == null || !file.isFile()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                file.delete();
+                return;
+            }
+            int count = in.readInt();
+            int[] loadedDates = new int[count];
+            short[] loadedMinutes = new short[count * PRAYERS.length];
+            for (int i = 0; i < count; i++) {
+                loadedDates[i] = in.readInt();
+                for (int j = 0; j < PRAYERS.length; j++) {
+                    loadedMinutes[i * PRAYERS.length + j] = in.readShort();
+                }
+            }
+            dates = loadedDates;
+            minutes = loadedMinutes;
+            Log.d(TAG, "📂 " + count + " jours d'horaires chargés");
+        } catch (IOException e) {
+            Log.w(TAG, "Grille d'horaires illisible: " + e.getMessage());
+            file.delete();
+        }
+    }
+
+    private void save() {
+        if (file == null) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dates.length);
+            for (int i = 0; i < dates.length; i++) {
+                out.writeInt(dates[i]);
+                for (int j = 0; j < PRAYERS.length; j++) {
+                    out.writeShort(minutes[i * PRAYERS.length + j]);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Écriture grille d'horaires impossible: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    public synchronized String getStats() {
+        ensureLoaded();
+        if (dates.length == 0) return "Grille d'horaires: vide";
+        return String.format(Locale.US, "Grille d'horaires: %d jours (%d → %d), %d octets",
+                             dates.length, dates[0], dates[dates.length - 1], 8 + dates.length * 16);
+    }
+}
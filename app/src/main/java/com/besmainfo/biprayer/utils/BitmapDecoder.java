@@ -0,0 +1,165 @@
+package com.besmainfo.biprayer.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Décodage borné des photos: une passe "dimensions seules", puis un décodage sous-échantillonné
+ * (inSampleSize) pour l'aperçu et un autre pour l'analyse. Une photo 12 MP décodée en entier
+ * pèse ~48 Mo en ARGB_8888; ici ni l'aperçu ni l'image d'analyse n'approchent cette taille.
+ * Bloquant: à appeler hors du thread UI.
+ */
+public final class BitmapDecoder {
+    private static final String TAG = "BitmapDecoder";
+
+    private BitmapDecoder() {
+    }
+
+    /** Ouvre un nouveau flux à chaque passe (un flux de ContentResolver ne se rembobine pas). */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    public static Source fromFile(final File file) {
+        return () -> new FileInputStream(file);
+    }
+
+    public static Source fromUri(final ContentResolver resolver, final Uri uri) {
+        return () -> {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) throw new FileNotFoundException("Flux indisponible: " + uri);
+            return in;
+        };
+    }
+
+    /**
+     * @param previewWidth largeur de la vue d'aperçu (l'aperçu la couvre au moins, pour centerCrop)
+     * @param previewHeight hauteur de la vue d'aperçu
+     * @param analysisLongEdge grand côté minimal de l'image d'analyse (celui visé avant envoi)
+     */
+    public static Decoded decode(Source source, int previewWidth, int previewHeight, int analysisLongEdge)
+            throws IOException {
+        long start = System.nanoTime();
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decodeStream(source, bounds);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Format d'image non reconnu");
+        }
+
+        int analysisSample = sampleSizeForLongEdge(width, height, analysisLongEdge);
+        int previewSample = sampleSizeForBounds(width, height, previewWidth, previewHeight);
+
+        Bitmap analysis = decodeSampled(source, analysisSample, Bitmap.Config.ARGB_8888);
+        Bitmap preview;
+        if (previewSample <= analysisSample) {
+            previewSample = analysisSample;
+            preview = analysis; // la vue n'est pas plus petite que l'image d'analyse: un seul décodage
+        } else {
+            // Aperçu opaque (JPEG): RGB_565 divise encore sa mémoire par deux
+            preview = decodeSampled(source, previewSample, Bitmap.Config.RGB_565);
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        Decoded decoded = new Decoded(preview, analysis, width, height, previewSample, analysisSample, elapsedMs);
+        Log.d(TAG, "🖼️ " + decoded);
+        return decoded;
+    }
+
+    /** Aperçu seul (l'image d'analyse existe déjà sous une autre forme, ex. JPEG de capture). */
+    public static Bitmap decodePreview(Source source, int previewWidth, int previewHeight) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decodeStream(source, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Format d'image non reconnu");
+        }
+        int sample = sampleSizeForBounds(bounds.outWidth, bounds.outHeight, previewWidth, previewHeight);
+        return decodeSampled(source, sample, Bitmap.Config.RGB_565);
+    }
+
+    /**
+     * Plus grande puissance de 2 qui garde les deux côtés au moins égaux à ceux demandés.
+     */
+    static int sampleSizeForBounds(int width, int height, int requestedWidth, int requestedHeight) {
+        int sample = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) return sample;
+        while (width / (sample * 2) >= requestedWidth && height / (sample * 2) >= requestedHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Plus grande puissance de 2 qui garde le grand côté au moins égal à longEdge
+     * (la réduction exacte se fait ensuite, avec filtrage, par ImagePreparer).
+     */
+    static int sampleSizeForLongEdge(int width, int height, int longEdge) {
+        int sample = 1;
+        if (longEdge <= 0) return sample;
+        int sourceLongEdge = Math.max(width, height);
+        while (sourceLongEdge / (sample * 2) >= longEdge) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private static Bitmap decodeSampled(Source source, int sampleSize, Bitmap.Config config) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        Bitmap bitmap = decodeStream(source, options);
+        if (bitmap == null) {
+            throw new IOException("Décodage impossible (échantillonnage 1/" + sampleSize + ")");
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decodeStream(Source source, BitmapFactory.Options options) throws IOException {
+        try (InputStream in = source.open()) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    /** Résultat du décodage: aperçu et image d'analyse (éventuellement le même objet). */
+    public static final class Decoded {
+        public final Bitmap preview;
+        public final Bitmap analysis;
+        public final int sourceWidth;
+        public final int sourceHeight;
+        public final int previewSample;
+        public final int analysisSample;
+        public final long elapsedMs;
+
+        Decoded(Bitmap preview, Bitmap analysis, int sourceWidth, int sourceHeight,
+                int previewSample, int analysisSample, long elapsedMs) {
+            this.preview = preview;
+            this.analysis = analysis;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.previewSample = previewSample;
+            this.analysisSample = analysisSample;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%dx%d -> aperçu %dx%d (1/%d), analyse %dx%d (1/%d) en %d ms",
+                                 sourceWidth, sourceHeight, preview.getWidth(), preview.getHeight(), previewSample,
+                                 analysis.getWidth(), analysis.getHeight(), analysisSample, elapsedMs);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.besmainfo.biprayer.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalisation de texte commune (français, anglais, arabe) pour l'indexation et la recherche.
+ * Supprime les accents latins, les voyelles arabes (harakat) et unifie les variantes de lettres.
+ */
+public final class TextNormalizer {
+    public static final int MIN_TOKEN_LENGTH = 2;
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Minuscules + suppression des diacritiques + unification des lettres arabes.
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) return "";
+
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            char folded = foldArabic(c);
+            if (folded != 0) out.append(folded);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Normalise puis découpe un texte en mots (lettres/chiffres), en ignorant les mots trop courts.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String normalized = normalize(text);
+        int start = -1;
+
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                if (i - start >= MIN_TOKEN_LENGTH) {
+                    tokens.add(normalized.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Variante d'une lettre (après décomposition NFD) ramenée à sa forme de base, 0 si à ignorer.
+     */
+    public static char foldArabic(char c) {
+        switch (c) {
+            case 'ٱ': // alef wasla
+                return 'ا';
+            case 'ى': // alef maqsura
+                return 'ي';
+            case 'ة': // ta marbuta
+                return 'ه';
+            case 'ـ': // tatweel
+                return '\u0000';
+            default:
+                return c;
+        }
+    }
+}
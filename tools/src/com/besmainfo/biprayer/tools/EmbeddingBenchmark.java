@@ -0,0 +1,89 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.ai.HashingEmbedder;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Débit, allocations et stabilité de HashingEmbedder sur des versets synthétiques (ar/fr/en),
+ * plus quelques similarités cosinus de contrôle (formes fléchies, accents, harakat).
+ *
+ * Usage: EmbeddingBenchmark [nbVersets] [passes]
+ */
+public class EmbeddingBenchmark {
+    private static final String[][] VOCABULARY = {
+        {"الله", "الصبر", "الصلاة", "رحمة", "الذين", "آمنوا", "ربك", "العلم", "الشكر", "قلوب"},
+        {"Allah", "patience", "prière", "miséricorde", "croyants", "Seigneur", "science", "bienfaits", "cœurs", "chemin"},
+        {"Allah", "patience", "prayer", "mercy", "believers", "Lord", "knowledge", "blessings", "hearts", "path"}
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 6236 * 3;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(3);
+        String[] verses = new String[count];
+        for (int i = 0; i < count; i++) {
+            String[] words = VOCABULARY[i % VOCABULARY.length];
+            StringBuilder text = new StringBuilder();
+            int length = 12 + random.nextInt(20);
+            for (int w = 0; w < length; w++) {
+                if (w > 0) text.append(' ');
+                text.append(words[random.nextInt(words.length)]);
+            }
+            verses[i] = text.toString();
+        }
+
+        HashingEmbedder embedder = new HashingEmbedder();
+        float[] buffer = new float[embedder.getDimension()];
+        long checksum = 0;
+
+        // Préchauffage JIT
+        for (String verse : verses) checksum += Float.floatToIntBits(embedder.embed(verse, buffer)[0]);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            for (String verse : verses) {
+                checksum += Float.floatToIntBits(embedder.embed(verse, buffer)[0]);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long calls = (long) count * passes;
+
+        System.out.printf("Embedding %d dims: %6.2f µs/verset, %5d octets alloués/verset (%d versets x %d passes)%n",
+                          embedder.getDimension(), nanos / 1000.0 / calls, allocated / calls, count, passes);
+
+        boolean stable = true;
+        for (int i = 0; i < Math.min(count, 1000); i++) {
+            float[] a = embedder.embed(verses[i]);
+            float[] b = new HashingEmbedder().embed(verses[i]);
+            stable &= java.util.Arrays.equals(a, b);
+        }
+        System.out.println("Vecteurs identiques entre instances: " + stable);
+
+        String[][] pairs = {
+            {"La patience est une lumière", "les patients et la lumière"},
+            {"prière du matin", "Priere du matin"},
+            {"وَاصْبِرْ وَمَا صَبْرُكَ إِلَّا بِاللَّهِ", "واصبر وما صبرك الا بالله"},
+            {"Seek help through patience and prayer", "patience and prayers bring help"},
+            {"La patience est une lumière", "knowledge of the heavens"},
+        };
+        for (String[] pair : pairs) {
+            System.out.printf("cos=%.3f  \"%s\" / \"%s\"%n",
+                              cosine(embedder.embed(pair[0]), embedder.embed(pair[1])), pair[0], pair[1]);
+        }
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+    private static float cosine(float[] a, float[] b) {
+        float dot = 0f;
+        for (int i = 0; i < a.length; i++) dot += a[i] * b[i];
+        return dot;
+    }
+}
@@ -0,0 +1,99 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.ai.HnswIndex;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Rappel@k et latence de HnswIndex face à la recherche exacte (force brute),
+ * sur des vecteurs 384 dimensions regroupés en thèmes (proche des embeddings de versets).
+ *
+ * Usage: HnswBenchmark [nbVecteurs] [nbRequêtes] [m] [efConstruction]
+ */
+public class HnswBenchmark {
+    private static final int DIMENSION = 384;
+    private static final int K = 10;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 6236 * 3;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int m = args.length > 2 ? Integer.parseInt(args[2]) : HnswIndex.DEFAULT_CONFIG.m;
+        int efConstruction = args.length > 3 ? Integer.parseInt(args[3]) : HnswIndex.DEFAULT_CONFIG.efConstruction;
+
+        Random random = new Random(1);
+        float[][] centroids = new float[64][];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = gaussian(random, 1f);
+        }
+
+        HnswIndex index = new HnswIndex(DIMENSION, new HnswIndex.Config(m, efConstruction, 64));
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            index.add(around(random, centroids[random.nextInt(centroids.length)]));
+        }
+        System.out.printf("Construction: %d vecteurs, M=%d, efConstruction=%d -> %.1f s%n",
+                          count, m, efConstruction, (System.nanoTime() - start) / 1e9);
+
+        float[][] queryVectors = new float[queries][];
+        int[][] truth = new int[queries][];
+        long bruteNanos = 0;
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = around(random, centroids[random.nextInt(centroids.length)]);
+            long t = System.nanoTime();
+            truth[q] = index.exactSearch(queryVectors[q], K).ids;
+            bruteNanos += System.nanoTime() - t;
+        }
+        System.out.printf("Force brute : rappel@%d = 1.000, latence moyenne %8.1f µs%n",
+                          K, bruteNanos / 1000.0 / queries);
+
+        for (int ef : new int[]{10, 16, 32, 64, 128, 256}) {
+            long[] latencies = new long[queries];
+            double recall = 0;
+            for (int q = 0; q < queries; q++) {
+                long t = System.nanoTime();
+                HnswIndex.Hits hits = index.search(queryVectors[q], K, ef);
+                latencies[q] = System.nanoTime() - t;
+                recall += overlap(truth[q], hits.ids) / (double) K;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("HNSW ef=%-4d: rappel@%d = %.3f, latence moyenne %8.1f µs, p99 %8.1f µs%n",
+                              ef, K, recall / queries, mean(latencies) / 1000.0,
+                              latencies[(int) (queries * 0.99)] / 1000.0);
+        }
+    }
+
+    private static float[] gaussian(Random random, float scale) {
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            v[i] = (float) random.nextGaussian() * scale;
+        }
+        return v;
+    }
+
+    private static float[] around(Random random, float[] centroid) {
+        float[] noise = gaussian(random, 0.9f);
+        for (int i = 0; i < DIMENSION; i++) {
+            noise[i] += centroid[i];
+        }
+        return noise;
+    }
+
+    private static int overlap(int[] expected, int[] actual) {
+        Set<Integer> set = new HashSet<>();
+        for (int id : expected) set.add(id);
+        int hits = 0;
+        for (int id : actual) {
+            if (set.contains(id)) hits++;
+        }
+        return hits;
+    }
+
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long v : values) sum += v;
+        return sum / values.length;
+    }
+}
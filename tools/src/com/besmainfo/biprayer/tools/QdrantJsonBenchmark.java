@@ -0,0 +1,147 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.ai.QdrantJson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocations et temps d'une recherche Qdrant côté client (requête 384 floats + réponse de 5 résultats):
+ * - "DOM": arbre JSON avec floats boxés, corps en String, réponse lue ligne à ligne puis parsée
+ *   (même schéma que l'ancien code org.json, reproduit ici avec l'arbre gson);
+ * - "flux": QdrantJson (écriture directe, parseur pull).
+ *
+ * Usage: QdrantJsonBenchmark [itérations]
+ */
+public class QdrantJsonBenchmark {
+    private static final int DIMENSION = 384;
+    private static final int LIMIT = 5;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        Random random = new Random(5);
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) vector[i] = (float) random.nextGaussian() * 0.05f;
+        byte[] response = sampleResponse(random).getBytes(StandardCharsets.UTF_8);
+        CountingStream sink = new CountingStream();
+
+        run("DOM ", iterations / 4, vector, response, sink, false);
+        run("flux", iterations / 4, vector, response, sink, true);
+        run("DOM ", iterations, vector, response, sink, false);
+        run("flux", iterations, vector, response, sink, true);
+    }
+
+    private static void run(String label, int iterations, float[] vector, byte[] response,
+                            CountingStream sink, boolean streaming) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        sink.count = 0;
+        int hits = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ByteArrayInputStream in = new ByteArrayInputStream(response);
+            hits += streaming ? streamingSearch(vector, sink, in) : domSearch(vector, sink, in);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%s: %7.1f µs/recherche, %7d octets alloués/recherche, requête %d octets (%d résultats)%n",
+                          label, nanos / 1000.0 / iterations, allocated / iterations,
+                          sink.count / iterations, hits / iterations);
+    }
+
+    private static int domSearch(float[] vector, OutputStream out, ByteArrayInputStream in) throws IOException {
+        JsonObject requestBody = new JsonObject();
+        JsonArray vectorArray = new JsonArray();
+        for (float v : vector) {
+            vectorArray.add(v);
+        }
+        requestBody.add("vector", vectorArray);
+        requestBody.addProperty("limit", LIMIT);
+        requestBody.addProperty("with_payload", true);
+        requestBody.addProperty("with_vector", false);
+        requestBody.addProperty("score_threshold", 0.3);
+        byte[] input = requestBody.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(input, 0, input.length);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        StringBuilder body = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            body.append(line.trim());
+        }
+
+        List<String> texts = new ArrayList<>();
+        JsonArray result = JsonParser.parseString(body.toString()).getAsJsonObject().getAsJsonArray("result");
+        for (JsonElement element : result) {
+            JsonObject hit = element.getAsJsonObject();
+            float score = hit.get("score").getAsFloat();
+            if (score > 0f) texts.add(hit.getAsJsonObject("payload").get("text").getAsString());
+        }
+        return texts.size();
+    }
+
+    private static int streamingSearch(float[] vector, OutputStream out, ByteArrayInputStream in) throws IOException {
+        QdrantJson.writeSearch(out, vector, LIMIT, 0.3f);
+
+        final List<String> texts = new ArrayList<>(LIMIT);
+        QdrantJson.readSearchResults(in, new QdrantJson.HitListener() {
+            @Override
+            public void onHit(int query, float score, String text, String reference) {
+                if (score > 0f) texts.add(text);
+            }
+        });
+        return texts.size();
+    }
+
+    private static String sampleResponse(Random random) {
+        String[] texts = {
+            "«Ô croyants! Cherchez secours dans la patience et la prière. Allah est avec les patients.» (2:153)",
+            "«Récite ce qui t'est révélé du Livre et accomplis la Salât.» (29:45)",
+            "يَا أَيُّهَا الَّذِينَ آمَنُوا اسْتَعِينُوا بِالصَّبْرِ وَالصَّلَاةِ",
+            "«Et cherchez secours dans l'endurance et la prière.» (2:45)",
+            "«Certes, la Salât demeure, pour les croyants, une prescription à des temps déterminés.» (4:103)"
+        };
+        StringBuilder json = new StringBuilder("{\n  \"result\": [\n");
+        for (int i = 0; i < texts.length; i++) {
+            if (i > 0) json.append(",\n");
+            json.append("    {\"id\": ").append(1000 + i)
+                .append(", \"version\": 3, \"score\": ").append(0.9f - i * 0.07f - random.nextFloat() * 0.01f)
+                .append(", \"payload\": {\"reference\": \"2:").append(150 + i)
+                .append("\", \"theme\": \"patience\", \"text\": \"").append(texts[i].replace("\"", "\\\""))
+                .append("\"}, \"vector\": null}");
+        }
+        json.append("\n  ],\n  \"status\": \"ok\",\n  \"time\": 0.000412\n}");
+        return json.toString();
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.ai.HnswIndex;
+import com.besmainfo.biprayer.ai.QuantizedVectorStore;
+
+import java.util.Random;
+
+/**
+ * Mémoire, rappel@k et latence de QuantizedVectorStore (int8, PQ, avec/sans rerank)
+ * face à la recherche exacte en float, sur des vecteurs 384 dimensions regroupés en thèmes.
+ *
+ * Usage: QuantizationBenchmark [nbVecteurs] [nbRequêtes]
+ */
+public class QuantizationBenchmark {
+    private static final int DIMENSION = 384;
+    private static final int K = 10;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 6236 * 3;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Random random = new Random(1);
+        float[][] centroids = new float[64][];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = gaussian(random, 1f);
+        }
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = around(random, centroids[random.nextInt(centroids.length)]);
+        }
+
+        // Référence exacte (force brute float); HNSW en config minimale, seul exactSearch sert ici
+        HnswIndex reference = new HnswIndex(DIMENSION, new HnswIndex.Config(2, 2, 2));
+        for (float[] v : vectors) reference.add(v);
+
+        float[][] queryVectors = new float[queries][];
+        int[][] truth = new int[queries][];
+        long bruteNanos = 0;
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = around(random, centroids[random.nextInt(centroids.length)]);
+            long t = System.nanoTime();
+            truth[q] = reference.exactSearch(queryVectors[q], K).ids;
+            bruteNanos += System.nanoTime() - t;
+        }
+        System.out.printf("float32        : %6d Ko, rappel@%d = 1.000, latence %8.1f µs%n",
+                          (long) count * DIMENSION * 4 / 1024, K, bruteNanos / 1000.0 / queries);
+
+        for (QuantizedVectorStore.Mode mode : QuantizedVectorStore.Mode.values()) {
+            for (boolean rerank : new boolean[]{false, true}) {
+                QuantizedVectorStore store = new QuantizedVectorStore(DIMENSION, mode, rerank);
+                long start = System.nanoTime();
+                for (float[] v : vectors) store.add(v);
+                store.search(queryVectors[0], K);
+                double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+                start = System.nanoTime();
+                double recall = store.measureRecall(queryVectors, truth, K);
+                double latency = (System.nanoTime() - start) / 1000.0 / queries;
+
+                System.out.printf("%-15s: %6d Ko, rappel@%d = %.3f, latence %8.1f µs (construction %.1f s)%n",
+                                  mode + (rerank ? "+rerank" : ""), store.getMemoryBytes() / 1024,
+                                  K, recall, latency, buildSeconds);
+                System.out.println("                 " + store.getMemoryReport());
+            }
+        }
+    }
+
+    private static float[] gaussian(Random random, float scale) {
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            v[i] = (float) random.nextGaussian() * scale;
+        }
+        return v;
+    }
+
+    private static float[] around(Random random, float[] centroid) {
+        float[] noise = gaussian(random, 0.9f);
+        for (int i = 0; i < DIMENSION; i++) {
+            noise[i] += centroid[i];
+        }
+        return noise;
+    }
+}
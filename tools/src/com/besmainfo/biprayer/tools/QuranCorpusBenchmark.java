@@ -0,0 +1,130 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.services.QuranCorpus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark du chargeur de corpus: corpus synthétique de 6 236 versets x 3 langues,
+ * comparé à une base chargée entièrement en mémoire (chaînes Java).
+ *
+ * Usage: QuranCorpusBenchmark [iterations]
+ */
+public class QuranCorpusBenchmark {
+    private static final int VERSE_COUNT = 6236;
+    private static final String[] LANGUAGES = {"ar", "fr", "en"};
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        List<QuranCorpusGenerator.Entry> entries = synthesize();
+        byte[] bytes = QuranCorpusGenerator.write(Arrays.asList(LANGUAGES), entries);
+
+        File file = File.createTempFile("quran_corpus", ".qbin");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        System.out.println("Corpus: " + VERSE_COUNT + " versets x " + LANGUAGES.length +
+                           " langues, " + bytes.length / 1024 + " Ko sur disque");
+
+        // Ouverture (mmap + en-tête + thèmes)
+        QuranCorpus corpus = null;
+        long openNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                FileChannel channel = raf.getChannel();
+                corpus = QuranCorpus.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            openNanos += System.nanoTime() - start;
+        }
+        System.out.printf("Ouverture mmap         : %8.1f µs%n", openNanos / 1000.0 / iterations);
+
+        // Accès aléatoire à un verset (décodage à l'affichage)
+        Random random = new Random(42);
+        int lookups = iterations * 1000;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int index = corpus.find(1 + random.nextInt(114), 1 + random.nextInt(55));
+            if (index >= 0) checksum += corpus.getText(index, 1).length();
+        }
+        long lookupNanos = System.nanoTime() - start;
+        System.out.printf("find + getText         : %8.1f ns/op%n", (double) lookupNanos / lookups);
+
+        long beforeOpen = usedHeap();
+        QuranCorpus retained;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            retained = QuranCorpus.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        long corpusHeap = usedHeap() - beforeOpen;
+
+        // Chargement complet en mémoire (équivalent de l'ancienne base en littéraux)
+        long before = usedHeap();
+        start = System.nanoTime();
+        String[][] eager = new String[VERSE_COUNT][LANGUAGES.length];
+        for (int i = 0; i < VERSE_COUNT; i++) {
+            for (int language = 0; language < LANGUAGES.length; language++) {
+                eager[i][language] = corpus.getText(i, language);
+            }
+        }
+        long eagerNanos = System.nanoTime() - start;
+        long eagerHeap = usedHeap() - before;
+        System.out.printf("Décodage complet       : %8.1f ms%n", eagerNanos / 1e6);
+        System.out.printf("Tas, chargement complet: %8d Ko%n", eagerHeap / 1024);
+        System.out.printf("Tas, corpus mappé      : %8d Ko%n", corpusHeap / 1024);
+        System.out.println("(checksum " + (checksum + eager.length + retained.getVerseCount()) + ")");
+    }
+
+    private static List<QuranCorpusGenerator.Entry> synthesize() {
+        Random random = new Random(7);
+        String[] themes = {"patience", "priere", "gratitude", "espoir", "sagesse", "pardon"};
+        String[][] vocabulary = {
+            {"الله", "الصبر", "الصلاة", "رحمة", "الذين", "آمنوا", "ربك", "العلم", "الشكر", "قلوب"},
+            {"Allah", "patience", "prière", "miséricorde", "croyants", "Seigneur", "science", "bienfaits", "cœurs", "chemin"},
+            {"Allah", "patience", "prayer", "mercy", "believers", "Lord", "knowledge", "blessings", "hearts", "path"}
+        };
+
+        List<QuranCorpusGenerator.Entry> entries = new ArrayList<>(VERSE_COUNT);
+        int surah = 1;
+        int ayah = 0;
+        for (int i = 0; i < VERSE_COUNT; i++) {
+            if (ayah >= 55) {
+                surah++;
+                ayah = 0;
+            }
+            ayah++;
+
+            String[] texts = new String[LANGUAGES.length];
+            for (int language = 0; language < LANGUAGES.length; language++) {
+                StringBuilder text = new StringBuilder();
+                int words = 12 + random.nextInt(20);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) text.append(' ');
+                    text.append(vocabulary[language][random.nextInt(vocabulary[language].length)]);
+                }
+                texts[language] = text.toString();
+            }
+
+            List<String> verseThemes = new ArrayList<>();
+            if (random.nextInt(4) == 0) verseThemes.add(themes[random.nextInt(themes.length)]);
+            entries.add(new QuranCorpusGenerator.Entry(surah, ayah, verseThemes, texts));
+        }
+        return entries;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
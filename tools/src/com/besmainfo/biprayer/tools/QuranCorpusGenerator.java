@@ -0,0 +1,188 @@
+package com.besmainfo.biprayer.tools;
+
+import com.besmainfo.biprayer.services.QuranCorpus;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Génère l'asset binaire quran_corpus.qbin (format décrit dans QuranCorpus) à partir d'un TSV.
+ *
+ * TSV: première ligne "#surah ayah themes ar fr en" (les colonnes après "themes" sont les langues),
+ * puis une ligne par verset; "themes" est une liste séparée par des virgules, éventuellement vide.
+ *
+ * Usage: QuranCorpusGenerator entree.tsv sortie.qbin
+ */
+public class QuranCorpusGenerator {
+
+    public static class Entry {
+        final int surah;
+        final int ayah;
+        final List<String> themes;
+        final String[] texts;
+
+        public Entry(int surah, int ayah, List<String> themes, String[] texts) {
+            this.surah = surah;
+            this.ayah = ayah;
+            this.themes = themes;
+            this.texts = texts;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: QuranCorpusGenerator entree.tsv sortie.qbin");
+            System.exit(1);
+        }
+
+        List<String> languages = new ArrayList<>();
+        List<Entry> entries = readTsv(args[0], languages);
+
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            byte[] corpus = write(languages, entries);
+            out.write(corpus);
+            System.out.println("✅ " + entries.size() + " versets, " + languages.size() +
+                               " langues -> " + args[1] + " (" + corpus.length + " octets)");
+        }
+    }
+
+    static List<Entry> readTsv(String path, List<String> languages) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+
+                String[] columns = line.split("\t", -1);
+                if (line.startsWith("#")) {
+                    for (int i = 3; i < columns.length; i++) {
+                        languages.add(columns[i].trim());
+                    }
+                    continue;
+                }
+
+                List<String> themes = new ArrayList<>();
+                for (String theme : columns[2].split(",")) {
+                    if (!theme.trim().isEmpty()) themes.add(theme.trim());
+                }
+
+                String[] texts = new String[languages.size()];
+                for (int i = 0; i < texts.length; i++) {
+                    texts[i] = 3 + i < columns.length ? columns[3 + i] : "";
+                }
+                entries.add(new Entry(Integer.parseInt(columns[0].trim()),
+                                      Integer.parseInt(columns[1].trim()), themes, texts));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Sérialise le corpus; les versets sont triés par sourate:verset.
+     */
+    public static byte[] write(List<String> languages, List<Entry> input) throws IOException {
+        List<Entry> entries = new ArrayList<>(input);
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.surah != b.surah ? Integer.compare(a.surah, b.surah) : Integer.compare(a.ayah, b.ayah);
+            }
+        });
+
+        Map<String, List<Integer>> themes = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            for (String theme : entries.get(i).themes) {
+                List<Integer> verses = themes.get(theme);
+                if (verses == null) {
+                    verses = new ArrayList<>();
+                    themes.put(theme, verses);
+                }
+                verses.add(i);
+            }
+        }
+        if (languages.size() > 255 || themes.size() > 254) {
+            throw new IOException("Trop de langues ou de thèmes pour le format");
+        }
+
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        for (String language : languages) {
+            byte[] code = language.getBytes(StandardCharsets.US_ASCII);
+            if (code.length != 2) throw new IOException("Code langue invalide: " + language);
+            meta.write(code);
+        }
+        for (Map.Entry<String, List<Integer>> theme : themes.entrySet()) {
+            writeString(meta, theme.getKey());
+            writeVarint(meta, theme.getValue().size());
+            int previous = 0;
+            for (int verse : theme.getValue()) {
+                writeVarint(meta, verse - previous);
+                previous = verse;
+            }
+        }
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        ByteBuffer directory = ByteBuffer.allocate(entries.size() * QuranCorpus.DIRECTORY_ENTRY_SIZE)
+                                         .order(ByteOrder.LITTLE_ENDIAN);
+        for (Entry entry : entries) {
+            if (entry.surah > 255 || entry.ayah > 0xFFFF) {
+                throw new IOException("Référence hors format: " + entry.surah + ":" + entry.ayah);
+            }
+            directory.put((byte) entry.surah);
+            directory.put((byte) 0);
+            directory.putShort((short) entry.ayah);
+            directory.putInt(strings.size());
+            for (String text : entry.texts) {
+                writeString(strings, text);
+            }
+        }
+
+        int directoryOffset = QuranCorpus.HEADER_SIZE + meta.size();
+        int stringsOffset = directoryOffset + directory.capacity();
+
+        ByteBuffer header = ByteBuffer.allocate(QuranCorpus.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(QuranCorpus.MAGIC);
+        header.putShort((short) QuranCorpus.VERSION);
+        header.put((byte) languages.size());
+        header.put((byte) themes.size());
+        header.putInt(entries.size());
+        header.putInt(directoryOffset);
+        header.putInt(stringsOffset);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(stringsOffset + strings.size());
+        out.write(header.array());
+        meta.writeTo(out);
+        out.write(directory.array());
+        strings.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}